@@ -0,0 +1,80 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberJpaRepository;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 같은 조회를 스프링 데이터 쿼리 메소드와 순수 JPA(직접 작성한 JPQL)로 비교한다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DerivedQueryBenchmark {
+
+    private static final int AGE = 10;
+
+    private MemberRepository memberRepository;
+    private MemberJpaRepository memberJpaRepository;
+    private PageRequest pageRequest;
+    private String username;
+    private int age;
+
+    @Setup
+    public void setUp(JpaBenchmarkState state) {
+        memberRepository = state.bean(MemberRepository.class);
+        memberJpaRepository = state.bean(MemberJpaRepository.class);
+        pageRequest = PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "username"));
+        int n = state.members / 2; // MemberBulkLoader - username "member" + n, age n % 100
+        username = "member" + n;
+        age = n % 100;
+    }
+
+    @Benchmark
+    public Slice<Member> sliceSpringData() {
+        return memberRepository.findSliceByAge(AGE, pageRequest);
+    }
+
+    @Benchmark
+    public List<Member> pageJpa() {
+        return memberJpaRepository.findByPage(AGE, 0, 3);
+    }
+
+    @Benchmark
+    public long totalCountJpa() {
+        return memberJpaRepository.totalCount(AGE);
+    }
+
+    @Benchmark
+    public List<Member> derivedFindByUsernameAndAge() {
+        return memberRepository.findByUsernameAndAgeGreaterThan(username, age - 1);
+    }
+
+    @Benchmark
+    public List<Member> queryFindUser() {
+        return memberRepository.findUser(username, age);
+    }
+
+    @Benchmark
+    public long countSpringData() {
+        return memberRepository.count();
+    }
+
+    @Benchmark
+    public long countJpa() {
+        return memberJpaRepository.count();
+    }
+}
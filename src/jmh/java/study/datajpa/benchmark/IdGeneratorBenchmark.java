@@ -0,0 +1,68 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 insert 처리량 - 시퀀스(pooled-lo) vs 애플리케이션 snowflake id
+ * 트랜잭션 하나에 BATCH 건을 persist 하고 커밋한다. (jdbc batch_size 1000)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IdGeneratorBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"sequence", "snowflake"})
+    public String strategy;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager em;
+    private TransactionTemplate tx;
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void boot() {
+        context = JpaBenchmarkState.start("id_" + strategy,
+                "spring.jpa.properties.hibernate.id-generator.strategy=" + strategy);
+        em = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        context.close();
+    }
+
+    /**
+     * 결과는 insert 건수 기준 (ops/s = rows/s)
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insert() {
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < BATCH; i++) {
+                em.persist(new Member("member" + sequence++, i % 100));
+            }
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.datajpa.entity.Item;
+import study.datajpa.entity.id.Ulid;
+import study.datajpa.repository.ItemRepository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item 아이디 - 랜덤 UUID vs 시간순 ULID insert 처리량과 테이블(+PK 인덱스) 크기
+ * 인덱스 크기를 보려고 파일 H2(build/jmh-h2) 를 쓴다. 먼저 preload 건을 넣어 두고 그 위에 insert 처리량을 잰다.
+ * ./gradlew jmh -PjmhIncludes=ItemKey
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ItemKeyBenchmark {
+
+    private static final int BATCH = 10_000;
+
+    @Param({"uuid", "ulid"})
+    public String keys;
+
+    @Param({"1000000"})
+    public int preload;
+
+    private ConfigurableApplicationContext context;
+    private ItemRepository itemRepository;
+    private JdbcTemplate jdbcTemplate;
+    private File databaseFile;
+
+    @Setup(Level.Trial)
+    public void boot() {
+        File directory = new File("build/jmh-h2");
+        String database = "items_" + keys;
+        databaseFile = new File(directory, database + ".mv.db");
+        databaseFile.delete();
+
+        context = JpaBenchmarkState.start(database,
+                "spring.datasource.url=jdbc:h2:file:" + new File(directory, database).getAbsolutePath());
+        itemRepository = context.getBean(ItemRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        for (int loaded = 0; loaded < preload; loaded += BATCH) {
+            itemRepository.insertAll(newItems());
+        }
+        report("preloaded");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        report("after benchmark");
+        context.close();
+    }
+
+    /**
+     * 결과는 insert 건수 기준 (ops/s = rows/s)
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insert() {
+        itemRepository.insertAll(newItems());
+    }
+
+    private List<Item> newItems() {
+        List<Item> items = new ArrayList<>(BATCH);
+        boolean ulid = "ulid".equals(keys);
+        for (int i = 0; i < BATCH; i++) {
+            items.add(ulid ? Item.withGeneratedId() : new Item(UUID.randomUUID().toString()));
+        }
+        return items;
+    }
+
+    private void report(String phase) {
+        Long rows = jdbcTemplate.queryForObject("select count(*) from item", Long.class);
+        // H2 - 테이블과 인덱스가 차지하는 바이트 (MVStore 페이지 기준 근사값)
+        Long diskSpaceUsed = jdbcTemplate.queryForObject("select disk_space_used('ITEM')", Long.class);
+        System.out.printf("%n[%s] keys=%s rows=%d item table+index=%,d KB file=%,d KB (id length %d)%n",
+                phase, keys, rows, diskSpaceUsed / 1024, databaseFile.length() / 1024,
+                "ulid".equals(keys) ? Ulid.LENGTH : 36);
+    }
+}
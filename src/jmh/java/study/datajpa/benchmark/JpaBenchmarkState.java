@@ -0,0 +1,83 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.DataJpaApplication;
+import study.datajpa.repository.MemberBulkLoader;
+
+import java.util.Arrays;
+
+/**
+ * 벤치마크 공통 상태 - 인메모리 H2 로 스프링(JPA 계층만)을 띄우고 members 건을 적재한다.
+ * 쿼리 경로 자체를 재기 위해 2차 캐시, 검색/카운트 캐시, 인메모리 인덱스는 모두 끈다.
+ */
+@State(Scope.Benchmark)
+public class JpaBenchmarkState {
+
+    @Param({"10000"})
+    public int members;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate readOnlyTx;
+
+    @Setup(Level.Trial)
+    public void boot() {
+        context = start("benchmark");
+
+        context.getBean(MemberBulkLoader.class)
+                .load(Arrays.asList("teamA", "teamB", "teamC", "teamD"), members);
+
+        readOnlyTx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * 캐시, 인덱스를 끈 JPA 계층만 인메모리 H2(database) 로 띄운다. properties 로 설정을 덮어쓸 수 있다.
+     */
+    static ConfigurableApplicationContext start(String database, String... properties) {
+        return new SpringApplicationBuilder(DataJpaApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.jpa.properties.hibernate.format_sql=false",
+                        "spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                        "spring.jpa.properties.javax.persistence.sharedCache.mode=NONE",
+                        "decorator.datasource.enabled=false",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "member.count-cache.enabled=false",
+                        "member.search-cache.enabled=false",
+                        "member.username-index.enabled=false",
+                        "member.read-model.enabled=false",
+                        "member.age-histogram.enabled=false")
+                .properties(properties)
+                .run();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * 지연 로딩처럼 영속성 컨텍스트가 필요한 경우
+     */
+    public TransactionTemplate readOnlyTx() {
+        return readOnlyTx;
+    }
+}
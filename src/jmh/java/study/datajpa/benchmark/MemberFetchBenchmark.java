@@ -0,0 +1,60 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberJpaRepository;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 + 팀 조회 - 페치 조인 vs 엔티티 그래프 vs 지연 로딩(default_batch_fetch_size 적용)
+ * 셋 다 팀 이름까지 읽어야 같은 일을 한 것이므로 트랜잭션 안에서 팀 이름을 소비한다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MemberFetchBenchmark {
+
+    private MemberRepository memberRepository;
+    private MemberJpaRepository memberJpaRepository; // findAll - 팀은 지연 로딩
+    private TransactionTemplate tx;
+
+    @Setup
+    public void setUp(JpaBenchmarkState state) {
+        memberRepository = state.bean(MemberRepository.class);
+        memberJpaRepository = state.bean(MemberJpaRepository.class);
+        tx = state.readOnlyTx();
+    }
+
+    @Benchmark
+    public void fetchJoin(Blackhole bh) {
+        tx.executeWithoutResult(status -> consume(memberRepository.findMemberFetchJoin(), bh));
+    }
+
+    @Benchmark
+    public void entityGraph(Blackhole bh) {
+        tx.executeWithoutResult(status -> consume(memberRepository.findMemberEntityGraph(), bh));
+    }
+
+    @Benchmark
+    public void lazyLoading(Blackhole bh) {
+        tx.executeWithoutResult(status -> consume(memberJpaRepository.findAll(), bh));
+    }
+
+    private static void consume(List<Member> members, Blackhole bh) {
+        for (Member member : members) {
+            bh.consume(member.getUsername());
+            bh.consume(member.getTeam() != null ? member.getTeam().getName() : null);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /members 목록 - 엔티티 조회 후 DTO 변환(findAll) vs DTO 프로젝션(findMemberDtoPage) (MemberListingTest 에서 옮겨 옴)
+ * 요청마다 새 영속성 컨텍스트를 쓰도록 트랜잭션 안에서 조회한다. 할당량은 gc 프로파일러로 본다.
+ * ./gradlew jmh -PjmhIncludes=MemberListing -PjmhProfilers=gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberListingBenchmark {
+
+    private MemberRepository memberRepository;
+    private TransactionTemplate tx;
+    private Pageable pageable;
+
+    @Setup
+    public void setUp(JpaBenchmarkState state) {
+        memberRepository = state.bean(MemberRepository.class);
+        tx = state.readOnlyTx();
+        pageable = PageRequest.of(3, 100, Sort.by("username"));
+    }
+
+    @Benchmark
+    public Page<MemberDto> entityAndMap() {
+        return tx.execute(status -> memberRepository.findAll(pageable).map(MemberDto::new));
+    }
+
+    @Benchmark
+    public Page<MemberDto> projection() {
+        return tx.execute(status -> memberRepository.findMemberDtoPage(pageable));
+    }
+}
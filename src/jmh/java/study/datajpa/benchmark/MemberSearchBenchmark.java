@@ -0,0 +1,64 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.repository.MemberJpaRepositorywithQueryDsl;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QueryDSL 동적 쿼리 - where 다중 파라미터 vs BooleanBuilder, 단순 페이징 vs count 분리 페이징
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberSearchBenchmark {
+
+    private MemberJpaRepositorywithQueryDsl queryDslRepository;
+    private MemberRepository memberRepository;
+    private MemberSearchCondition cond;
+    private PageRequest pageRequest;
+
+    @Setup
+    public void setUp(JpaBenchmarkState state) {
+        queryDslRepository = state.bean(MemberJpaRepositorywithQueryDsl.class);
+        memberRepository = state.bean(MemberRepository.class);
+
+        cond = new MemberSearchCondition();
+        cond.setTeamname("teamB");
+        cond.setAgeGoe(30);
+        cond.setAgeLoe(40);
+        pageRequest = PageRequest.of(1, 20);
+    }
+
+    @Benchmark
+    public List<MemberDto> search() {
+        return queryDslRepository.search(cond);
+    }
+
+    @Benchmark
+    public List<MemberDto> searchByBuilder() {
+        return queryDslRepository.searchByBuilder(cond);
+    }
+
+    @Benchmark
+    public Page<MemberDto> searchPageSimple() {
+        return memberRepository.searchPageSimple(cond, pageRequest);
+    }
+
+    @Benchmark
+    public Page<MemberDto> searchPageComplex() {
+        return memberRepository.searchPageComplex(cond, pageRequest);
+    }
+}
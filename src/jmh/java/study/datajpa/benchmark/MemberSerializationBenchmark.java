@@ -0,0 +1,77 @@
+package study.datajpa.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import study.datajpa.dto.MemberDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /v2, /v3 응답(Page<MemberDto>) 직렬화 - JSON vs Smile vs CBOR
+ * 처리량과 함께 셋업에서 형식별 행당 바이트를 출력한다. DB 없이 직렬화만 잰다.
+ * ./gradlew jmh -PjmhIncludes=MemberSerialization
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MemberSerializationBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"20", "1000"})
+    public int rows;
+
+    private ObjectMapper objectMapper;
+    private Page<MemberDto> page;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        switch (format) {
+            case "smile":
+                objectMapper = new ObjectMapper(new SmileFactory());
+                break;
+            case "cbor":
+                objectMapper = new ObjectMapper(new CBORFactory());
+                break;
+            default:
+                objectMapper = new ObjectMapper();
+        }
+
+        List<MemberDto> content = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            content.add(new MemberDto(100_000L + i, "member" + i, i % 100, (long) (i % 4 + 1), "team" + (char) ('A' + i % 4)));
+        }
+        page = new PageImpl<>(content, PageRequest.of(0, rows), 100_000);
+
+        encoded = objectMapper.writeValueAsBytes(page);
+        System.out.printf("%n[%s] rows=%d bytes=%,d bytes/row=%.1f%n",
+                format, rows, encoded.length, (double) encoded.length / rows);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public Object deserialize() throws Exception {
+        return objectMapper.readTree(encoded);
+    }
+}
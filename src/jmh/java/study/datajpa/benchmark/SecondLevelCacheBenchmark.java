@@ -0,0 +1,97 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberBulkLoader;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 2차 캐시 적용 전/후 단건 조회 비교 (MemberSecondLevelCacheTest 에서 옮겨 옴)
+ * 1차 캐시 영향을 없애기 위해 조회마다 EntityManager 를 새로 만든다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SecondLevelCacheBenchmark {
+
+    private static final String RETRIEVE_MODE = "javax.persistence.cache.retrieveMode";
+    private static final Map<String, Object> BYPASS = Collections.singletonMap(RETRIEVE_MODE, CacheRetrieveMode.BYPASS);
+
+    @Param({"100"})
+    public int members;
+
+    private ConfigurableApplicationContext context;
+    private EntityManagerFactory emf;
+    private MemberRepository memberRepository;
+    private Long[] memberIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void boot() {
+        context = JpaBenchmarkState.start("second_level_cache",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+                "spring.jpa.properties.javax.persistence.sharedCache.mode=ENABLE_SELECTIVE");
+        context.getBean(MemberBulkLoader.class).load(Collections.singletonList("cacheTeam"), members);
+
+        emf = context.getBean(EntityManagerFactory.class);
+        memberRepository = context.getBean(MemberRepository.class);
+        EntityManager em = emf.createEntityManager();
+        try {
+            List<Long> ids = em.createQuery("select m.id from Member m", Long.class).getResultList();
+            memberIds = ids.toArray(new Long[0]);
+        } finally {
+            em.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public Member findByIdUncached() {
+        return find(BYPASS);
+    }
+
+    @Benchmark
+    public Member findByIdCached() {
+        return find(Collections.emptyMap());
+    }
+
+    /**
+     * 쿼리 캐시(식별자) + 2차 캐시(엔티티)
+     */
+    @Benchmark
+    public List<Member> findCachedByUsername() {
+        return memberRepository.findCachedByUsername("member1");
+    }
+
+    private Member find(Map<String, Object> hints) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.find(Member.class, memberIds[next++ % memberIds.length], hints);
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package study.datajpa.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Accept: application/x-jackson-smile 또는 application/cbor 요청에 바이너리로 응답한다. (기본은 그대로 JSON)
+ * JSON 과 같은 스프링 부트 ObjectMapper 설정(spring.jackson.*, 모듈)으로 만들므로 필드 구성은 JSON 응답과 같다.
+ * 필드 이름이 행마다 반복되지 않아(Smile 공유 이름 참조) 목록/페이지 응답에서 크기 차이가 크다.
+ */
+@Configuration
+public class BinaryMessageConverterConfig {
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder
+                .factory(new SmileFactory())
+                .build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder
+                .factory(new CBORFactory())
+                .build());
+    }
+}
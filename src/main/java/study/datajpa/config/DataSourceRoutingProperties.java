@@ -0,0 +1,34 @@
+package study.datajpa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "datasource.routing")
+public class DataSourceRoutingProperties {
+
+    private boolean enabled = false;
+    // 복제 지연이 이보다 크면 읽기 전용 트랜잭션도 primary 로 보낸다
+    private Duration maxLag = Duration.ofSeconds(5);
+    // 레플리카 상태(지연, 접속 가능 여부)를 다시 확인하는 주기
+    private Duration checkInterval = Duration.ofSeconds(5);
+    // 레플리카에서 실행해 복제 지연(초)을 돌려주는 SQL, 없으면 지연이 없다고 본다
+    private String lagQuery;
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Getter @Setter
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username = "sa";
+        private String password = "";
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,254 @@
+package study.datajpa.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 읽기 전용 트랜잭션은 레플리카로, 나머지는 primary 로 보낸다.
+ * 트랜잭션 시작 후에 라우팅해야 하므로 LazyConnectionDataSourceProxy 로 감싸서 쓴다.
+ *
+ * 레플리카는 백그라운드 스레드가 check-interval 마다 lag-query 로 복제 지연을 확인하고, max-lag 를 넘거나 접속에 실패하면
+ * 다음 확인 때까지 제외한다. 요청 스레드는 확인 결과(volatile)만 읽는다. 쓸 수 있는 레플리카가 없으면 primary 로 보낸다.
+ *
+ * 레플리카에서 읽은 트랜잭션은 isReplicaRead() 가 true 다. 복제 지연만큼 낡은 값일 수 있으므로 검색/count 캐시에 저장하지 않는다.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public static final String PRIMARY = "primary";
+    private static final String REASON_LAG = "lag";
+    private static final String REASON_UNAVAILABLE = "unavailable";
+    private static final String REASON_MIXED = "mixed";
+    private static final Object REPLICA_READ_KEY = ReplicaRoutingDataSource.class.getName() + ".replicaRead";
+
+    private final DataSourceRoutingProperties properties;
+    private final MeterRegistry registry;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService lagChecker;
+    private final Map<String, Counter> fallbacks = new HashMap<>();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    DataSourceRoutingProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach((name, dataSource) -> {
+            targets.put(name, dataSource);
+            Replica replica = new Replica(name, dataSource);
+            this.replicas.add(replica);
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .tag("route", name)
+                    .baseUnit("seconds")
+                    .register(registry);
+        });
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        for (String reason : new String[]{REASON_LAG, REASON_UNAVAILABLE, REASON_MIXED}) {
+            fallbacks.put(reason, registry.counter("datasource.route.fallback", "reason", reason));
+        }
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 첫 확인은 기동 중에 끝내고, 이후에는 check-interval 마다 백그라운드에서 확인한다.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkReplicas();
+        long interval = properties.getCheckInterval().toMillis();
+        lagChecker.scheduleWithFixedDelay(this::checkReplicas, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 현재 트랜잭션이 레플리카 커넥션으로 읽었는지
+     */
+    public static boolean isReplicaRead() {
+        return TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.hasResource(REPLICA_READ_KEY);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        String reason = null;
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (replica.usable) {
+                return replica.name;
+            }
+            reason = reason == null || reason.equals(replica.reason) ? replica.reason : REASON_MIXED;
+        }
+        if (reason != null) {
+            fallbacks.get(reason).increment();
+        }
+        return PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect((String) determineCurrentLookupKey(), null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect((String) determineCurrentLookupKey(), username, password);
+    }
+
+    private Connection connect(String route, String username, String password) throws SQLException {
+        DataSource target = getResolvedDataSources().get(route);
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            Connection connection = username == null
+                    ? target.getConnection() : target.getConnection(username, password);
+            sample.stop(registry.timer("datasource.route.connection", "route", route));
+            if (!PRIMARY.equals(route)) {
+                markReplicaRead();
+            }
+            return connection;
+        } catch (SQLException e) {
+            if (PRIMARY.equals(route)) {
+                throw e;
+            }
+            // 레플리카 접속 실패 - 다음 확인 때까지 제외하고 primary 로
+            log.warn("replica {} unavailable, falling back to primary: {}", route, e.getMessage());
+            replicas.stream().filter(r -> r.name.equals(route)).forEach(Replica::markUnavailable);
+            fallbacks.get(REASON_UNAVAILABLE).increment();
+            return connect(PRIMARY, username, password);
+        }
+    }
+
+    /**
+     * 라우팅 결과 확인용 (테스트, 로그)
+     */
+    public Map<String, Boolean> replicaStatus() {
+        Map<String, Boolean> status = new LinkedHashMap<>();
+        replicas.forEach(r -> status.put(r.name, r.usable));
+        return status;
+    }
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try {
+                replica.check();
+            } catch (RuntimeException e) {
+                // 예외로 주기 작업이 멈추지 않게 한다
+                log.warn("replica {} check failed", replica.name, e);
+            }
+        }
+    }
+
+    private static void markReplicaRead() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(REPLICA_READ_KEY)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(REPLICA_READ_KEY, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(REPLICA_READ_KEY);
+            }
+        });
+    }
+
+    /**
+     * 지연 확인 스레드를 멈추고 라우트별 커넥션 풀을 닫는다.
+     */
+    @Override
+    public void close() {
+        lagChecker.shutdownNow();
+        for (DataSource dataSource : getResolvedDataSources().values()) {
+            if (dataSource instanceof Closeable) {
+                try {
+                    ((Closeable) dataSource).close();
+                } catch (IOException e) {
+                    log.warn("failed to close data source", e);
+                }
+            }
+        }
+    }
+
+    private class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean usable = true;
+        private volatile String reason; // 마지막으로 제외된 이유 - lag / unavailable
+        private volatile double lagSeconds;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * 기동 시와 지연 확인 스레드에서만 호출한다.
+         */
+        private void check() {
+            if (!StringUtils.hasText(properties.getLagQuery())) {
+                lagSeconds = 0;
+                usable = true;
+                return;
+            }
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(properties.getLagQuery())) {
+                lagSeconds = rs.next() ? rs.getDouble(1) : 0;
+                boolean lagging = lagSeconds > properties.getMaxLag().toMillis() / 1000.0;
+                if (lagging) {
+                    log.warn("replica {} lag {}s exceeds {}s", name, lagSeconds, properties.getMaxLag().getSeconds());
+                }
+                if (lagging) {
+                    reason = REASON_LAG; // usable 보다 먼저 - 요청 스레드가 제외된 레플리카의 이유를 항상 읽을 수 있게
+                }
+                usable = !lagging;
+            } catch (SQLException e) {
+                log.warn("replica {} lag check failed: {}", name, e.getMessage());
+                reason = REASON_UNAVAILABLE;
+                usable = false;
+            }
+        }
+
+        /**
+         * 접속에 실패한 요청 스레드에서 호출한다. 다음 확인 때까지 제외된다.
+         */
+        private void markUnavailable() {
+            reason = REASON_UNAVAILABLE;
+            usable = false;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package study.datajpa.config;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.resource.beans.container.spi.BeanContainer;
+import org.hibernate.resource.beans.container.spi.ContainedBean;
+import org.hibernate.resource.beans.spi.BeanInstanceProducer;
+import study.datajpa.entity.EntityChangeListener;
+
+/**
+ * 샤드 EntityManagerFactory 용 빈 컨테이너.
+ * EntityChangeListener 만 이벤트를 버리는 인스턴스로 바꾸고 나머지(감사 리스너 등)는 스프링 컨테이너에 맡긴다.
+ * 캐시, 인메모리 인덱스는 기본 데이터소스 기준이라 샤드 엔티티 변경이 섞이면 안 된다.
+ */
+@RequiredArgsConstructor
+class ShardBeanContainer implements BeanContainer {
+
+    private final BeanContainer delegate;
+
+    @Override
+    public <B> ContainedBean<B> getBean(Class<B> beanType, LifecycleOptions lifecycleOptions,
+                                        BeanInstanceProducer fallbackProducer) {
+        if (beanType == EntityChangeListener.class) {
+            B listener = beanType.cast(new EntityChangeListener(event -> { }));
+            return () -> listener;
+        }
+        return delegate.getBean(beanType, lifecycleOptions, fallbackProducer);
+    }
+
+    @Override
+    public <B> ContainedBean<B> getBean(String name, Class<B> beanType, LifecycleOptions lifecycleOptions,
+                                        BeanInstanceProducer fallbackProducer) {
+        return delegate.getBean(name, beanType, lifecycleOptions, fallbackProducer);
+    }
+
+    @Override
+    public void stop() {
+        delegate.stop();
+    }
+}
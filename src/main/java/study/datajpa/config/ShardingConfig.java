@@ -0,0 +1,135 @@
+package study.datajpa.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.id.SequenceMismatchStrategy;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.id.PluggableIdGenerator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * sharding.enabled=true 일 때 샤드마다 데이터소스 + EntityManagerFactory 를 만든다.
+ * 기본 데이터소스/EntityManagerFactory 는 그대로 두고, 회원/팀 검색과 저장만 ShardedMemberRepository 가 샤드로 보낸다.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public Shards shards(ShardingProperties shardingProperties,
+                         EntityManagerFactoryBuilder builder,
+                         JpaProperties jpaProperties,
+                         HibernateProperties hibernateProperties,
+                         ConfigurableListableBeanFactory beanFactory,
+                         MeterRegistry registry) {
+        Map<String, Object> properties = new HashMap<>(
+                hibernateProperties.determineHibernateProperties(jpaProperties.getProperties(), new HibernateSettings()));
+        // 2차 캐시 리전 이름이 기본 EntityManagerFactory 와 겹치므로 샤드에서는 끈다
+        properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false");
+        properties.put(AvailableSettings.USE_QUERY_CACHE, "false");
+        properties.put(AvailableSettings.JPA_SHARED_CACHE_MODE, "NONE");
+        properties.put(AvailableSettings.BEAN_CONTAINER, new ShardBeanContainer(new SpringBeanContainer(beanFactory)));
+        // 샤드 시퀀스는 일부러 increment 를 (샤드 수 * 50) 으로 두고 엔티티는 50 으로 매핑한다 - pooled-lo 로 값 하나에서 id 50개만 쓴다.
+        // 기본값(EXCEPTION)은 기존 스키마로 기동할 때 불일치로 MappingException 을 던지고, FIX 는 50 을 (샤드 수 * 50) 으로 바꿔
+        // 다른 샤드 구간까지 id 를 만들므로 검사하지 않는다. 구간은 validateSequences 가 직접 확인한다.
+        properties.put(AvailableSettings.SEQUENCE_INCREMENT_SIZE_MISMATCH_STRATEGY, SequenceMismatchStrategy.NONE);
+        if (PluggableIdGenerator.isSnowflake(properties)) {
+            // 샤드 위치를 시퀀스 구간으로 계산하므로 snowflake id 와는 같이 쓸 수 없다
+            throw new IllegalStateException("sharding requires " + PluggableIdGenerator.STRATEGY + "=" + PluggableIdGenerator.SEQUENCE);
+        }
+        boolean createSchema = String.valueOf(properties.get(AvailableSettings.HBM2DDL_AUTO)).startsWith("create");
+
+        List<ShardingProperties.Shard> configured = shardingProperties.getShards();
+        if (configured.isEmpty()) {
+            throw new IllegalStateException("sharding.enabled=true but no sharding.shards configured");
+        }
+
+        List<Shards.Shard> shards = new ArrayList<>();
+        try {
+            for (int index = 0; index < configured.size(); index++) {
+                ShardingProperties.Shard shard = configured.get(index);
+                HikariDataSource dataSource = new HikariDataSource();
+                dataSource.setPoolName("shard-" + index);
+                dataSource.setJdbcUrl(shard.getUrl());
+                dataSource.setUsername(shard.getUsername());
+                dataSource.setPassword(shard.getPassword());
+                dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+                dataSource.setMetricRegistry(registry);
+
+                LocalContainerEntityManagerFactoryBean factory = builder
+                        .dataSource(dataSource)
+                        .packages(Member.class)
+                        .persistenceUnit("shard-" + index)
+                        .properties(properties)
+                        .build();
+                factory.afterPropertiesSet();
+
+                if (createSchema) {
+                    offsetSequences(dataSource, index, configured.size());
+                }
+                validateSequences(new JdbcTemplate(dataSource), index, configured.size());
+                shards.add(new Shards.Shard(index, dataSource, factory.getObject()));
+                log.info("shard-{} ready: {}", index, shard.getUrl());
+            }
+        } catch (RuntimeException e) {
+            new Shards(shards).close();
+            throw e;
+        }
+        return new Shards(shards);
+    }
+
+    /**
+     * 스키마를 새로 만든 경우에만 시퀀스를 샤드별 구간으로 옮긴다. (update/none 이면 validateSequences 로 확인만 한다)
+     */
+    private static void offsetSequences(HikariDataSource dataSource, int index, int shardCount) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        long start = (long) index * Shards.ID_BLOCK_SIZE + 1;
+        long increment = (long) shardCount * Shards.ID_BLOCK_SIZE;
+        for (String sequence : new String[]{"member_seq", "team_seq"}) {
+            jdbcTemplate.execute("alter sequence " + sequence + " restart with " + start + " increment by " + increment);
+        }
+    }
+
+    /**
+     * 시퀀스가 샤드 구간에 있는지 확인한다. 아니면 샤드끼리 id 가 겹치므로 기동을 멈춘다.
+     * 샤드 k 의 시퀀스 값은 k * 50 + 1 에서 시작해 샤드 수 * 50 씩 증가해야 한다. (pooled-lo - 값 하나가 id 50개)
+     */
+    public static void validateSequences(JdbcTemplate jdbcTemplate, int index, int shardCount) {
+        long start = (long) index * Shards.ID_BLOCK_SIZE + 1;
+        long increment = (long) shardCount * Shards.ID_BLOCK_SIZE;
+        for (String sequence : new String[]{"member_seq", "team_seq"}) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "select current_value, increment from information_schema.sequences where sequence_name = ?",
+                    sequence.toUpperCase());
+            if (rows.isEmpty()) {
+                throw new IllegalStateException("shard-" + index + ": sequence " + sequence + " does not exist");
+            }
+            long current = ((Number) rows.get(0).get("CURRENT_VALUE")).longValue();
+            long actualIncrement = ((Number) rows.get(0).get("INCREMENT")).longValue();
+            if (actualIncrement != increment || Math.floorMod(current - start, increment) != 0) {
+                throw new IllegalStateException(String.format(
+                        "shard-%d: sequence %s (current %d, increment %d) is not in the shard id range - run "
+                                + "'alter sequence %s restart with <next %d + n * %d> increment by %d'",
+                        index, sequence, current, actualIncrement, sequence, start, increment, increment));
+            }
+        }
+    }
+}
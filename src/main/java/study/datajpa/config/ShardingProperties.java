@@ -0,0 +1,32 @@
+package study.datajpa.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+    // 샤드에 동시에 보내는 검색 쿼리 스레드 수
+    private int searchPoolSize = 8;
+    // 샤드 하나라도 이 시간 안에 응답하지 않으면 검색 실패
+    private Duration searchTimeout = Duration.ofSeconds(10);
+    // 순서가 샤드 번호 - 팀 id 로 샤드를 계산하므로 운영 중에 순서를 바꾸거나 중간에 끼워 넣으면 안 된다
+    private List<Shard> shards = new ArrayList<>();
+
+    @Getter @Setter
+    public static class Shard {
+        private String url;
+        private String username = "sa";
+        private String password = "";
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,96 @@
+package study.datajpa.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 샤드 목록. 팀 id 로 샤드를 찾는다.
+ * 샤드 k 의 시퀀스는 k * 50 + 1 부터 (샤드 수 * 50) 씩 증가하므로 pooled-lo 로 받는 id 블록이 샤드끼리 겹치지 않고,
+ * id 만 보고 어느 샤드에서 만들어졌는지 알 수 있다.
+ */
+public class Shards implements Closeable {
+
+    // Member, Team 의 @SequenceGenerator allocationSize 와 같아야 한다
+    static final int ID_BLOCK_SIZE = 50;
+
+    private final List<Shard> shards;
+
+    Shards(List<Shard> shards) {
+        this.shards = Collections.unmodifiableList(shards);
+    }
+
+    public List<Shard> all() {
+        return shards;
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public Shard get(int index) {
+        return shards.get(index);
+    }
+
+    public Shard forTeamId(long teamId) {
+        return shards.get((int) (((teamId - 1) / ID_BLOCK_SIZE) % shards.size()));
+    }
+
+    /**
+     * 새 팀을 둘 샤드 - 팀 이름 해시로 고른다. (이후 그 팀의 회원은 팀 id 로 같은 샤드에 저장)
+     */
+    public Shard forNewTeam(String name) {
+        return forKey(name);
+    }
+
+    /**
+     * 팀이 없는 회원을 둘 샤드
+     */
+    public Shard forKey(String key) {
+        return shards.get(key == null ? 0 : Math.floorMod(key.hashCode(), shards.size()));
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.close();
+        }
+    }
+
+    @Getter
+    public static class Shard {
+        private final int index;
+        private final HikariDataSource dataSource;
+        private final EntityManagerFactory entityManagerFactory;
+        // 샤드 트랜잭션에 묶이는 공유 EntityManager
+        private final EntityManager entityManager;
+        private final TransactionTemplate writeTx;
+        private final TransactionTemplate readTx;
+
+        Shard(int index, HikariDataSource dataSource, EntityManagerFactory entityManagerFactory) {
+            this.index = index;
+            this.dataSource = dataSource;
+            this.entityManagerFactory = entityManagerFactory;
+            this.entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+
+            JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+            transactionManager.afterPropertiesSet();
+            this.writeTx = new TransactionTemplate(transactionManager);
+            this.readTx = new TransactionTemplate(transactionManager);
+            this.readTx.setReadOnly(true);
+        }
+
+        private void close() {
+            entityManagerFactory.close();
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package study.datajpa.config;
+
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.datajpa.entity.id.PluggableIdGenerator;
+
+/**
+ * snowflake id 는 2^53 보다 커서 자바스크립트 number 로 읽으면 끝자리가 바뀐다.
+ * snowflake 전략일 때는 Long(id, teamId) 을 문자열로 응답한다. (JSON, Smile, CBOR 모두 - 기본형 long 인 count 등은 그대로 숫자)
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.jpa.properties." + PluggableIdGenerator.STRATEGY, havingValue = PluggableIdGenerator.SNOWFLAKE)
+public class SnowflakeJsonConfig {
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer snowflakeIdAsString() {
+        return builder -> builder.serializerByType(Long.class, ToStringSerializer.instance);
+    }
+}
@@ -3,13 +3,10 @@ package study.datajpa.controller;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import study.datajpa.entity.Member;
-import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberBulkLoader;
 
 import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
+import java.util.Arrays;
 
 @Profile("local")
 @Component
@@ -24,21 +21,13 @@ public class InitMember {
     }
 
     @Component
+    @RequiredArgsConstructor
     static class InitMemberService {
-        @PersistenceContext
-        private EntityManager em;
+        private final MemberBulkLoader memberBulkLoader;
 
-        @Transactional
+        // member0 ~ member99, 짝수는 teamA 홀수는 teamB (트랜잭션은 로더가 청크 단위로 연다)
         public void init() {
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-            em.persist(teamA);
-            em.persist(teamB);
-
-            for (int i = 0; i < 100; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member"+i,i,selectedTeam));
-            }
+            memberBulkLoader.load(Arrays.asList("teamA", "teamB"), 100);
         }
     }
 }
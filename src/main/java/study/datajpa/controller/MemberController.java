@@ -4,14 +4,23 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import study.datajpa.dto.MemberCursor;
+import study.datajpa.dto.MemberCursorPage;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.dto.SearchEngine;
 import study.datajpa.entity.Member;
+import study.datajpa.monitoring.StatementBudget;
 import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.index.MemberColumnStore;
+import study.datajpa.repository.index.MemberReadModelVerifier;
 
 import java.util.List;
 
@@ -19,7 +28,11 @@ import java.util.List;
 @RequiredArgsConstructor
 public class MemberController {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 2000; // data.web.pageable.max-page-size 와 맞춘다
+
     private final MemberRepository memberRepository;
+    private final MemberColumnStore columnStore;
+    private final MemberReadModelVerifier readModelVerifier;
 
     @GetMapping("/members/{id}")
     public String findMember(@PathVariable("id") Long id) {
@@ -36,25 +49,64 @@ public class MemberController {
      *
      * 파라미터 - page, size, sort
      */
+    @StatementBudget(2)
     @GetMapping("/members")
     public Page<MemberDto> list(@PageableDefault(size=5) Pageable pageable) {
-        return memberRepository.findAll(pageable)
-                .map(MemberDto::new);
+        return memberRepository.findMemberDtoPage(pageable);
     }
 
+    /**
+     * 파라미터 engine=COLUMNAR 면 인메모리 컬럼 저장소로 검색한다. (v1~v3)
+     */
     @GetMapping("/v1/members")
-    public List<MemberDto> searchMemberV1(MemberSearchCondition cond) {
+    public List<MemberDto> searchMemberV1(MemberSearchCondition cond,
+                                          @RequestParam(defaultValue = "JPA") SearchEngine engine) {
+        if (engine == SearchEngine.COLUMNAR) {
+            List<MemberDto> result = columnStore.search(cond);
+            if (result != null) {
+                return result;
+            }
+        }
         return memberRepository.search(cond);
     }
 
+    @GetMapping("/v1/members/verify")
+    public MemberReadModelVerifier.Report verifyMemberV1(MemberSearchCondition cond) {
+        return readModelVerifier.verify(cond);
+    }
+
     @GetMapping("/v2/members")
-    public Page<MemberDto> searchMemberV2(MemberSearchCondition cond, Pageable pageable) {
-        return memberRepository.searchPageSimple(cond, pageable);
+    public Page<MemberDto> searchMemberV2(MemberSearchCondition cond, Pageable pageable,
+                                          @RequestParam(defaultValue = "JPA") SearchEngine engine) {
+        Page<MemberDto> page = engine == SearchEngine.COLUMNAR ? columnStore.searchPage(cond, pageable) : null;
+        return page != null ? page : memberRepository.searchPageSimple(cond, pageable);
     }
 
     @GetMapping("/v3/members")
-    public Page<MemberDto> searchMemberV3(MemberSearchCondition cond, Pageable pageable) {
-        return memberRepository.searchPageComplex(cond, pageable);
+    public Page<MemberDto> searchMemberV3(MemberSearchCondition cond, Pageable pageable,
+                                          @RequestParam(defaultValue = "JPA") SearchEngine engine) {
+        Page<MemberDto> page = engine == SearchEngine.COLUMNAR ? columnStore.searchPage(cond, pageable) : null;
+        return page != null ? page : memberRepository.searchPageComplex(cond, pageable);
+    }
+
+    /**
+     * 키셋 페이징 - 응답의 nextCursor 를 다음 요청의 cursor 로 넘긴다.
+     * 파라미터 - cursor, size
+     */
+    @GetMapping("/v4/members")
+    public MemberCursorPage searchMemberV4(MemberSearchCondition cond,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "10") int size) {
+        MemberCursor after = null;
+        if (cursor != null) {
+            try {
+                after = MemberCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                // 클라이언트가 보낸 값이 잘못된 것이므로 500 이 아니라 400
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        }
+        return memberRepository.searchByCursor(cond, after, Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE));
     }
 
 }
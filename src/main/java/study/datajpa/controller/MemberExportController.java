@@ -0,0 +1,120 @@
+package study.datajpa.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.repository.MemberRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 회원 전체 내보내기 - 결과를 메모리에 모으지 않고 커서로 읽으면서 바로 응답에 쓴다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class MemberExportController {
+
+    static final int FETCH_SIZE = 1000;
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+    private final MemberRepository memberRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 파라미터 - username, teamname, ageGoe, ageLoe, format(json, csv)
+     */
+    @GetMapping("/members/export")
+    public ResponseEntity<StreamingResponseBody> export(MemberSearchCondition cond,
+                                                        @RequestParam(defaultValue = "json") String format) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+
+        // 응답은 별도 스레드에서 쓰여지므로 OSIV 의 영속성 컨텍스트를 쓸 수 없다 -> 읽기 전용 트랜잭션을 직접 연다
+        StreamingResponseBody body = out -> {
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            readOnly.executeWithoutResult(status -> {
+                try {
+                    if (csv) {
+                        writeCsv(cond, out);
+                    } else {
+                        writeJson(cond, out);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        };
+
+        return ResponseEntity.ok()
+                .contentType(csv ? TEXT_CSV : MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=members." + (csv ? "csv" : "json"))
+                .body(body);
+    }
+
+    private void writeJson(MemberSearchCondition cond, OutputStream out) throws IOException {
+        // close 는 버퍼만 비운다 - 응답 스트림은 컨테이너가 닫고,
+        // 중간에 실패하면 배열을 자동으로 닫지 않아 잘린 응답이 정상 JSON 처럼 보이지 않게 한다
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)) {
+            generator.writeStartArray();
+            memberRepository.streamSearch(cond, FETCH_SIZE, dto -> {
+                try {
+                    generator.writeObject(dto);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+    }
+
+    private void writeCsv(MemberSearchCondition cond, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,username,age,teamId,teamname\n");
+        memberRepository.streamSearch(cond, FETCH_SIZE, dto -> {
+            try {
+                writer.write(toCsvRow(dto));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private String toCsvRow(MemberDto dto) {
+        return dto.getId() + ","
+                + csvField(dto.getUsername()) + ","
+                + dto.getAge() + ","
+                + (dto.getTeamId() != null ? dto.getTeamId() : "") + ","
+                + csvField(dto.getTeamname()) + "\n";
+    }
+
+    private String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -0,0 +1,53 @@
+package study.datajpa.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import study.datajpa.repository.MemberBulkLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 부하 테스트용 대량 데이터 적재
+ * java -jar data-jpa.jar --spring.profiles.active=seed --member.seed.members=5000000 --member.seed.teams=100
+ * 캐시와 read model 은 적재가 끝난 뒤 한번에 다시 만든다. (MemberBulkLoader)
+ */
+@Profile("seed")
+@Component
+@RequiredArgsConstructor
+public class MemberSeeder implements ApplicationRunner {
+
+    private final MemberBulkLoader memberBulkLoader;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${member.seed.teams:10}")
+    private int teams;
+
+    @Value("${member.seed.team-prefix:team}")
+    private String teamPrefix;
+
+    @Value("${member.seed.members:1000000}")
+    private int members;
+
+    @Value("${member.seed.exit:true}")
+    private boolean exit;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> teamNames = new ArrayList<>();
+        for (int i = 0; i < teams; i++) {
+            teamNames.add(teamPrefix + i);
+        }
+        memberBulkLoader.load(teamNames, members);
+
+        if (exit) {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+}
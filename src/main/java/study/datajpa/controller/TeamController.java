@@ -0,0 +1,36 @@
+package study.datajpa.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import study.datajpa.dto.TeamDto;
+import study.datajpa.monitoring.StatementBudget;
+import study.datajpa.repository.TeamRepository;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamRepository teamRepository;
+
+    /**
+     * 팀 + 소속 회원 목록
+     * 파라미터 - page, size, sort(id, name) (팀 기준)
+     */
+    @StatementBudget(3)
+    @GetMapping("/teams")
+    public Page<TeamDto> list(@PageableDefault(size = 10) Pageable pageable) {
+        try {
+            return teamRepository.findTeamsWithMembers(pageable);
+        } catch (InvalidDataAccessApiUsageException e) {
+            // 지원하지 않는 sort 속성
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package study.datajpa.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * totalElements 가 캐시된 근사값인 페이지. 응답 JSON 에 totalApproximate: true 가 추가된다.
+ */
+public class ApproximateCountPage<T> extends PageImpl<T> {
+
+    public ApproximateCountPage(List<T> content, Pageable pageable, long total) {
+        super(content, pageable, total);
+    }
+
+    public boolean isTotalApproximate() {
+        return true;
+    }
+}
@@ -0,0 +1,47 @@
+package study.datajpa.dto;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 키셋(seek) 페이징 커서 - 정렬 키(age)와 member_id 로 마지막 위치를 표현한다.
+ * 클라이언트에는 내용을 알 수 없는 문자열로만 노출한다.
+ */
+@Getter
+public class MemberCursor {
+
+    private static final String DELIMITER = ":";
+
+    private final int age;
+    private final Long id;
+
+    public MemberCursor(int age, Long id) {
+        this.age = age;
+        this.id = id;
+    }
+
+    public static MemberCursor of(MemberDto last) {
+        return new MemberCursor(last.getAge(), last.getId());
+    }
+
+    public String encode() {
+        String raw = age + DELIMITER + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MemberCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(DELIMITER);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("invalid cursor: " + cursor);
+            }
+            return new MemberCursor(Integer.parseInt(parts[0]), Long.valueOf(parts[1]));
+        } catch (IllegalArgumentException e) { // NumberFormatException 포함
+            throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -24,6 +24,11 @@ public class MemberDto {
         this.teamname = teamname;
     }
 
+    public MemberDto(Long id, String username) {
+        this.id = id;
+        this.username = username;
+    }
+
     public MemberDto(Long id, String username, String teamname) {
         this.id = id;
         this.username = username;
@@ -3,10 +3,44 @@ package study.datajpa.dto;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import lombok.Data;
 
+import static org.springframework.util.StringUtils.hasText;
+
 @Data
 public class MemberSearchCondition {
     private String username;
+    private UsernameMatchMode usernameMatch = UsernameMatchMode.EXACT;
     private String teamname;
     private Integer ageGoe;
     private Integer ageLoe;
+
+    /**
+     * 검색에 영향이 없는 값("", 공백)을 null 로 맞춘 복사본 - 캐시 키로 사용한다.
+     */
+    public MemberSearchCondition normalized() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(hasText(username) ? username : null);
+        normalized.setUsernameMatch(usernameMatch != null ? usernameMatch : UsernameMatchMode.EXACT);
+        normalized.setTeamname(hasText(teamname) ? teamname : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
+
+    /**
+     * username 조건이 없으면 항상 true
+     */
+    public boolean usernameMatches(String candidate) {
+        if (!hasText(username)) {
+            return true;
+        }
+        UsernameMatchMode mode = usernameMatch != null ? usernameMatch : UsernameMatchMode.EXACT;
+        return mode.matches(candidate, username);
+    }
+
+    /**
+     * 나이 조건이 없으면 항상 true
+     */
+    public boolean ageMatches(int age) {
+        return (ageGoe == null || age >= ageGoe) && (ageLoe == null || age <= ageLoe);
+    }
 }
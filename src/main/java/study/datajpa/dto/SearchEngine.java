@@ -0,0 +1,9 @@
+package study.datajpa.dto;
+
+/**
+ * 회원 검색을 처리할 엔진. 요청 파라미터 engine 으로 고른다.
+ */
+public enum SearchEngine {
+    JPA,      // DB 조회 (기본)
+    COLUMNAR  // 인메모리 컬럼 저장소 - 준비되지 않았으면 JPA 로 대신 처리
+}
@@ -0,0 +1,23 @@
+package study.datajpa.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class TeamDto {
+
+    private Long id;
+    private String name;
+    private List<MemberDto> members = new ArrayList<>();
+
+    @QueryProjection
+    public TeamDto(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+}
@@ -0,0 +1,24 @@
+package study.datajpa.dto;
+
+/**
+ * username 검색 방식. PREFIX, INFIX 는 인메모리 username 인덱스로 후보 id 를 먼저 찾는다.
+ */
+public enum UsernameMatchMode {
+    EXACT,  // username = ?
+    PREFIX, // username like '?%'
+    INFIX;  // username like '%?%'
+
+    public boolean matches(String username, String keyword) {
+        if (username == null) {
+            return false;
+        }
+        switch (this) {
+            case PREFIX:
+                return username.startsWith(keyword);
+            case INFIX:
+                return username.contains(keyword);
+            default:
+                return username.equals(keyword);
+        }
+    }
+}
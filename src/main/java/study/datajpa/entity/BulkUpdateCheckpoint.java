@@ -0,0 +1,44 @@
+package study.datajpa.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * 청크 단위 벌크 업데이트의 진행 위치. 청크와 같은 트랜잭션에서 갱신되므로
+ * 중간에 죽어도 lastMemberId 다음부터 이어서 실행할 수 있다.
+ */
+@Entity
+@Getter
+@ToString
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class BulkUpdateCheckpoint extends BaseTimeEntity {
+
+    @Id
+    private String jobId;
+    private int age;            // 대상 조건 (age 이상) - 이어서 실행할 때 같아야 한다
+    private long lastMemberId;  // 이 id 까지 처리 완료
+    private long maxMemberId;   // 작업 시작 시점의 최대 id - 이후에 추가된 회원은 대상이 아니다
+    private long updatedRows;
+    private int chunks;
+    private boolean completed;
+
+    public BulkUpdateCheckpoint(String jobId, int age, long lastMemberId, long maxMemberId) {
+        this.jobId = jobId;
+        this.age = age;
+        this.lastMemberId = lastMemberId;
+        this.maxMemberId = maxMemberId;
+        this.completed = lastMemberId >= maxMemberId;
+    }
+
+    public void advance(long lastMemberId, int updatedRows) {
+        this.lastMemberId = lastMemberId;
+        this.updatedRows += updatedRows;
+        this.chunks++;
+        this.completed = lastMemberId >= maxMemberId;
+    }
+}
@@ -0,0 +1,58 @@
+package study.datajpa.entity;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.function.Supplier;
+
+/**
+ * JPA 엔티티 리스너 - 하이버네이트가 SpringBeanContainer 로 생성하므로 생성자 주입이 가능하다.
+ */
+@RequiredArgsConstructor
+public class EntityChangeListener {
+
+    // 스레드마다 - 다른 스레드의 변경 이벤트는 그대로 발행된다
+    private static final ThreadLocal<Boolean> suspended = ThreadLocal.withInitial(() -> false);
+
+    private final ApplicationEventPublisher publisher;
+
+    /**
+     * 대량 적재처럼 끝난 뒤 캐시와 read model 을 통째로 다시 만드는 작업은 행마다 이벤트를 발행하지 않는다.
+     */
+    public static <T> T runSuspended(Supplier<T> task) {
+        boolean previous = suspended.get();
+        suspended.set(true);
+        try {
+            return task.get();
+        } finally {
+            suspended.set(previous);
+        }
+    }
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        if (suspended.get()) {
+            return;
+        }
+        publisher.publishEvent(new EntityChangedEvent(entity, EntityChangedEvent.Type.PERSIST));
+    }
+
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        if (suspended.get()) {
+            return;
+        }
+        publisher.publishEvent(new EntityChangedEvent(entity, EntityChangedEvent.Type.UPDATE));
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        if (suspended.get()) {
+            return;
+        }
+        publisher.publishEvent(new EntityChangedEvent(entity, EntityChangedEvent.Type.REMOVE));
+    }
+}
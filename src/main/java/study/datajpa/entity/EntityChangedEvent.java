@@ -0,0 +1,31 @@
+package study.datajpa.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 엔티티가 insert/update/delete 되었을 때 발행되는 이벤트. (플러시 시점)
+ * 캐시, 인메모리 인덱스가 이 이벤트로 갱신된다.
+ */
+@Getter
+@ToString
+public class EntityChangedEvent {
+
+    public enum Type { PERSIST, UPDATE, REMOVE }
+
+    private final Object entity;
+    private final Type type;
+
+    public EntityChangedEvent(Object entity, Type type) {
+        this.entity = entity;
+        this.type = type;
+    }
+
+    public boolean isMember() {
+        return entity instanceof Member;
+    }
+
+    public boolean isTeam() {
+        return entity instanceof Team;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.domain.Persistable;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+import study.datajpa.entity.id.Ulid;
 
 import javax.persistence.Entity;
 import javax.persistence.EntityListeners;
@@ -29,6 +30,20 @@ public class Item implements Persistable<String> {
         this.id = id;
     }
 
+    /**
+     * 시간순 ULID 아이디로 만든다. 아이디를 미리 채워도 isNew() 는 생성일로 판단하므로 save 가 merge(select) 하지 않는다.
+     */
+    public static Item withGeneratedId() {
+        return new Item(Ulid.next());
+    }
+
+    /**
+     * JPA 를 거치지 않고 insert 했을 때 isNew() 가 false 가 되도록 생성일을 채운다.
+     */
+    public void markCreated(LocalDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
     @Override
     public boolean isNew() {
         return createdDate == null;
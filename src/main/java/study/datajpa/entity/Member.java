@@ -1,10 +1,17 @@
 package study.datajpa.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(EntityChangeListener.class)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
@@ -13,11 +20,18 @@ import javax.persistence.*;
         query = "select m from Member m where m.username = :username"
 )
 @NamedEntityGraph(name = "Member.all", attributeNodes = @NamedAttributeNode("team"))
+@Table(indexes = @Index(name = "idx_member_age_id", columnList = "age, member_id")) // 키셋 페이징용
 public class Member extends BaseEntity {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "member_id_generator")
+    @GenericGenerator(name = "member_id_generator", strategy = "study.datajpa.entity.id.PluggableIdGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "member_seq"),
+            @Parameter(name = "increment_size", value = "50")}) // sequence 면 pooled-lo: 50건마다 시퀀스 1회, snowflake 면 DB 호출 없음
     @Column(name = "member_id")
     private Long id;
+    @Version // 낙관적 락 - 동시에 바꾸면 나중에 커밋하는 쪽이 OptimisticLockException (벌크 update 도 같이 올린다)
+    @Setter(AccessLevel.NONE)
+    private Long version;
     private String username;
     private int age;
     @ManyToOne(fetch = FetchType.LAZY)
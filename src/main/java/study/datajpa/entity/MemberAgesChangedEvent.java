@@ -0,0 +1,36 @@
+package study.datajpa.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * 회원 나이만 JDBC 로 바꾼 뒤 발행한다. (MemberAgeWriteBehind 의 flush)
+ * 바뀐 회원과 바뀌기 전/후 나이를 모두 알려 주므로 받는 쪽은 그 회원만 고치면 된다.
+ */
+@Getter
+@ToString
+public class MemberAgesChangedEvent {
+
+    private final Map<Long, Change> changes; // member id -> 변경
+
+    public MemberAgesChangedEvent(Map<Long, Change> changes) {
+        this.changes = changes;
+    }
+
+    @Getter
+    @ToString
+    public static class Change {
+
+        private final long teamId; // 팀이 없으면 0
+        private final int before;
+        private final int after;
+
+        public Change(long teamId, int before, int after) {
+            this.teamId = teamId;
+            this.before = before;
+            this.after = after;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package study.datajpa.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 대량 적재는 엔티티 리스너 이벤트 없이 실행되므로 끝난 뒤 발행한다.
+ * 받는 쪽은 캐시를 비우고 read model 을 다시 만든다.
+ */
+@Getter
+@ToString
+public class MemberBulkLoadedEvent {
+
+    private final int teams;
+    private final long members;
+
+    public MemberBulkLoadedEvent(int teams, long members) {
+        this.teams = teams;
+        this.members = members;
+    }
+}
@@ -0,0 +1,19 @@
+package study.datajpa.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 벌크 연산은 엔티티 리스너를 거치지 않으므로 별도로 발행한다.
+ * ageGoe 이상인 회원의 나이가 바뀌었을 수 있다. (null 이면 전체)
+ */
+@Getter
+@ToString
+public class MemberBulkUpdatedEvent {
+
+    private final Integer ageGoe;
+
+    public MemberBulkUpdatedEvent(Integer ageGoe) {
+        this.ageGoe = ageGoe;
+    }
+}
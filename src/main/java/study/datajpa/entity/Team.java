@@ -1,23 +1,39 @@
 package study.datajpa.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.OptimisticLock;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(EntityChangeListener.class)
 @Getter @Setter
 @ToString(of = {"id", "name"})
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Team extends BaseEntity {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "team_id_generator")
+    @GenericGenerator(name = "team_id_generator", strategy = "study.datajpa.entity.id.PluggableIdGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "team_seq"),
+            @Parameter(name = "increment_size", value = "50")}) // sequence 면 pooled-lo: 50건마다 시퀀스 1회, snowflake 면 DB 호출 없음
     @Column(name = "team_id")
     private Long id;
+    @Version // 낙관적 락 - 동시에 바꾸면 나중에 커밋하는 쪽이 OptimisticLockException (벌크 update 도 같이 올린다)
+    @Setter(AccessLevel.NONE)
+    private Long version;
     private String name;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @OptimisticLock(excluded = true) // 회원이 팀을 옮겨도 팀 버전은 올리지 않는다 (팀 행 충돌 방지)
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
@@ -0,0 +1,92 @@
+package study.datajpa.entity.id;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * spring.jpa.properties.hibernate.id-generator.strategy 로 고르는 id 생성기.
+ * sequence - 기존 시퀀스(pooled-lo), snowflake - 애플리케이션 안에서 SnowflakeId 로 만든다. (DB 왕복 없음)
+ * 시퀀스는 전략과 상관없이 스키마에 만들어 두므로 다시 sequence 로 돌아가도 된다.
+ * (snowflake id 가 시퀀스 값보다 훨씬 크므로 그 뒤에 sequence 로 바꿔도 충돌하지 않는다)
+ * snowflake 는 첫 id 를 만들기 전에 테이블의 가장 큰 id 를 읽어 그 뒤부터 준다. (재시작 전에 미리 당겨 쓴 id 와 겹치지 않게)
+ */
+public class PluggableIdGenerator extends SequenceStyleGenerator {
+
+    public static final String STRATEGY = "hibernate.id-generator.strategy";
+    public static final String NODE_ID = "hibernate.id-generator.node-id";
+
+    public static final String SEQUENCE = "sequence";
+    public static final String SNOWFLAKE = "snowflake";
+
+    private SnowflakeId snowflake;
+    private String maxIdSql;
+    private volatile boolean advanced;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, params, serviceRegistry);
+
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        String strategy = String.valueOf(settings.getOrDefault(STRATEGY, SEQUENCE)).trim();
+        if (SNOWFLAKE.equalsIgnoreCase(strategy)) {
+            snowflake = SnowflakeId.forNode(Long.parseLong(String.valueOf(settings.getOrDefault(NODE_ID, "0")).trim()));
+            maxIdSql = "select max(" + params.getProperty(PersistentIdentifierGenerator.PK)
+                    + ") from " + params.getProperty(PersistentIdentifierGenerator.TABLE);
+        } else if (!SEQUENCE.equalsIgnoreCase(strategy)) {
+            throw new MappingException("unknown " + STRATEGY + ": " + strategy);
+        }
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        if (snowflake != null) {
+            if (!advanced) {
+                advancePastMaxId(session);
+            }
+            return snowflake.next();
+        }
+        return super.generate(session, object);
+    }
+
+    /**
+     * persist 도중이므로 쿼리(자동 플러시)를 거치지 않고 시퀀스 조회처럼 JDBC 로 직접 읽는다.
+     */
+    private synchronized void advancePastMaxId(SharedSessionContractImplementor session) {
+        if (advanced) {
+            return;
+        }
+        try {
+            PreparedStatement statement = session.getJdbcCoordinator().getStatementPreparer().prepareStatement(maxIdSql);
+            try {
+                ResultSet rs = session.getJdbcCoordinator().getResultSetReturn().extract(statement);
+                if (rs.next()) {
+                    snowflake.advancePast(rs.getLong(1));
+                }
+            } finally {
+                session.getJdbcCoordinator().getLogicalConnection().getResourceRegistry().release(statement);
+                session.getJdbcCoordinator().afterStatementExecution();
+            }
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper().convert(e, "could not read max id", maxIdSql);
+        }
+        advanced = true;
+    }
+
+    public static boolean isSnowflake(Map<String, ?> jpaProperties) {
+        Object strategy = jpaProperties.get(STRATEGY);
+        return strategy != null && SNOWFLAKE.equalsIgnoreCase(String.valueOf(strategy).trim());
+    }
+}
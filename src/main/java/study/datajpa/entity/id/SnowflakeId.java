@@ -0,0 +1,86 @@
+package study.datajpa.entity.id;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake 형식 64비트 id - [41비트 epoch 이후 밀리초][10비트 노드][12비트 노드 내 순번]
+ * DB 를 거치지 않고 만들며 같은 노드 안에서는 항상 증가한다.
+ * (시각, 순번) 을 long 하나로 묶어 CAS 로 갱신하므로 락이 없다.
+ * 1ms 안에 순번 4096 개를 다 쓰면 다음 밀리초를 미리 당겨 쓰고, 시계가 뒤로 가도 마지막 값 다음을 준다.
+ *
+ * 마지막 값은 메모리에만 있으므로 재시작하면 현재 시각부터 다시 센다. 이전 실행이 미리 당겨 쓴 구간이나
+ * 재시작 사이에 시계가 뒤로 간 구간은 다시 나올 수 있으므로, 저장된 가장 큰 id 를 advancePast 로 넘겨 그 뒤부터 준다.
+ * (PluggableIdGenerator 가 테이블마다 첫 id 를 만들기 전에 한다)
+ */
+public class SnowflakeId {
+
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    // 2021-01-01T00:00:00Z - 41비트로 약 69년
+    public static final long EPOCH = Instant.parse("2021-01-01T00:00:00Z").toEpochMilli();
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final Map<Long, SnowflakeId> NODES = new ConcurrentHashMap<>();
+
+    private final long nodeId;
+    private final LongSupplier clock;
+    // (epoch 이후 밀리초 << SEQUENCE_BITS) | 순번
+    private final AtomicLong last = new AtomicLong();
+
+    public SnowflakeId(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeId(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    /**
+     * 노드마다 인스턴스 하나 - 같은 노드 id 를 쓰는 생성기끼리 순번을 공유해야 중복이 없다.
+     */
+    public static SnowflakeId forNode(long nodeId) {
+        return NODES.computeIfAbsent(nodeId, SnowflakeId::new);
+    }
+
+    public long next() {
+        long now = (clock.getAsLong() - EPOCH) << SEQUENCE_BITS;
+        long prev;
+        long next;
+        do {
+            prev = last.get();
+            next = Math.max(prev + 1, now);
+        } while (!last.compareAndSet(prev, next));
+
+        long millis = next >>> SEQUENCE_BITS;
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+    }
+
+    /**
+     * id 가 어느 노드 것이든 (시각, 순번) 이 그보다 큰 id 만 준다.
+     */
+    public void advancePast(long id) {
+        long millis = id >>> (NODE_BITS + SEQUENCE_BITS);
+        last.accumulateAndGet((millis << SEQUENCE_BITS) | (id & SEQUENCE_MASK), Math::max);
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    public static long nodeOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH);
+    }
+}
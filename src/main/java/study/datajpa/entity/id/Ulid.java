@@ -0,0 +1,93 @@
+package study.datajpa.entity.id;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Random;
+
+/**
+ * ULID 형식 문자열 id - [48비트 밀리초][80비트 랜덤] 을 Crockford Base32 26자로 쓴다.
+ * 문자열 정렬 순서가 생성 시각 순서라서 PK 인덱스에 항상 끝쪽으로 들어간다. (랜덤 UUID 는 인덱스 페이지 전체에 흩어진다)
+ * 같은 밀리초 안에서는 랜덤 부분을 1씩 올려서 한 JVM 안에서 항상 증가한다.
+ */
+public final class Ulid {
+
+    public static final int LENGTH = 26;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final long RANDOM_HI_MASK = 0xFFFFL; // 랜덤 80비트 중 위 16비트
+
+    private static final Random RANDOM = new SecureRandom();
+
+    private static long lastMillis = -1;
+    private static long randomHi;
+    private static long randomLo;
+
+    private Ulid() {
+    }
+
+    public static String next() {
+        long millis;
+        long hi;
+        long lo;
+        synchronized (Ulid.class) {
+            long now = System.currentTimeMillis();
+            if (now > lastMillis) {
+                lastMillis = now;
+                randomHi = RANDOM.nextInt() & RANDOM_HI_MASK;
+                randomLo = RANDOM.nextLong();
+            } else if (++randomLo == 0 && (randomHi = (randomHi + 1) & RANDOM_HI_MASK) == 0) {
+                lastMillis++; // 같은 밀리초에 2^80 개를 다 쓴 경우 - 다음 밀리초를 당겨 쓴다
+            }
+            millis = lastMillis;
+            hi = randomHi;
+            lo = randomLo;
+        }
+        return encode(millis, hi, lo);
+    }
+
+    public static Instant timestampOf(String ulid) {
+        if (ulid == null || ulid.length() != LENGTH) {
+            throw new IllegalArgumentException("not a ulid: " + ulid);
+        }
+        long millis = 0;
+        for (int i = 0; i < 10; i++) {
+            int value = decode(ulid.charAt(i));
+            if (value < 0) {
+                throw new IllegalArgumentException("not a ulid: " + ulid);
+            }
+            millis = (millis << 5) | value;
+        }
+        return Instant.ofEpochMilli(millis);
+    }
+
+    private static String encode(long millis, long hi, long lo) {
+        char[] chars = new char[LENGTH];
+        for (int i = 9; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (millis & 31)];
+            millis >>>= 5;
+        }
+        // 랜덤 80비트(hi 16 + lo 64)를 위에서부터 5비트씩
+        for (int i = 0; i < 16; i++) {
+            int shift = 75 - 5 * i;
+            long group;
+            if (shift >= 64) {
+                group = hi >>> (shift - 64);
+            } else if (shift > 59) {
+                group = (lo >>> shift) | (hi << (64 - shift));
+            } else {
+                group = lo >>> shift;
+            }
+            chars[10 + i] = ALPHABET[(int) (group & 31)];
+        }
+        return new String(chars);
+    }
+
+    private static int decode(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == Character.toUpperCase(c)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,76 @@
+package study.datajpa.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PessimisticLockException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Lock} 이 붙은 레포지토리 메소드의 락 대기 시간(member.lock.wait)과 락 획득 실패(member.lock.conflict{type=pessimistic}).
+ * 대기 시간은 쿼리 실행 시간을 포함한다.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class LockMetricsAspect {
+
+    private static final LockMeters NOT_LOCKING = new LockMeters(null, null);
+
+    private final MeterRegistry registry;
+    // 메소드마다 한번만 @Lock 을 확인하고 미터를 등록한다 - 락이 없는 메소드는 NOT_LOCKING
+    private final Map<Method, LockMeters> meters = new ConcurrentHashMap<>();
+
+    @Around("this(org.springframework.data.repository.Repository)")
+    public Object aroundRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        LockMeters lockMeters = meters.computeIfAbsent(method, this::lockMetersOf);
+        if (lockMeters == NOT_LOCKING) {
+            return joinPoint.proceed();
+        }
+
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } catch (PessimisticLockingFailureException | PessimisticLockException | LockTimeoutException e) {
+            lockMeters.conflicts.increment();
+            throw e;
+        } finally {
+            lockMeters.waits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private LockMeters lockMetersOf(Method method) {
+        if (!AnnotatedElementUtils.hasAnnotation(method, Lock.class)) {
+            return NOT_LOCKING;
+        }
+        String operation = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        return new LockMeters(
+                Timer.builder("member.lock.wait").tag("operation", operation).register(registry),
+                registry.counter("member.lock.conflict", "type", "pessimistic", "operation", operation));
+    }
+
+    private static class LockMeters {
+        private final Timer waits;
+        private final Counter conflicts;
+
+        private LockMeters(Timer waits, Counter conflicts) {
+            this.waits = waits;
+            this.conflicts = conflicts;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package study.datajpa.monitoring;
+
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+/**
+ * 스레드별 호출 프레임 스택 (컨트롤러 -> 레포지토리 메소드).
+ * JDBC 문장과 읽은 행 수는 스택에 있는 모든 프레임에 더해진다. (바깥 프레임은 안쪽 호출을 포함한 합계)
+ */
+public final class QueryFrames {
+
+    private static final ThreadLocal<Deque<Frame>> FRAMES = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private QueryFrames() {
+    }
+
+    public static Frame push(String layer, String name) {
+        return push(layer, name, false);
+    }
+
+    /**
+     * trackPatterns - 문장 수 예산 검사용으로 SQL 별 실행 횟수도 모은다.
+     */
+    public static Frame push(String layer, String name, boolean trackPatterns) {
+        Frame frame = new Frame(layer, name, trackPatterns ? new LinkedHashMap<>() : null);
+        FRAMES.get().push(frame);
+        return frame;
+    }
+
+    public static void pop(Frame frame) {
+        Deque<Frame> frames = FRAMES.get();
+        frames.remove(frame);
+        if (frames.isEmpty()) {
+            FRAMES.remove();
+        }
+    }
+
+    public static Frame current() {
+        return FRAMES.get().peek();
+    }
+
+    static void recordStatement(String sql) {
+        for (Frame frame : FRAMES.get()) {
+            frame.statements++;
+            if (frame.patterns != null) {
+                frame.patterns.merge(normalize(sql), 1, Integer::sum);
+            }
+        }
+    }
+
+    private static String normalize(String sql) {
+        return sql == null ? "" : sql.trim().replaceAll("\\s+", " ");
+    }
+
+    static void recordRow() {
+        for (Frame frame : FRAMES.get()) {
+            frame.rows++;
+        }
+    }
+
+    /**
+     * 바깥 -> 안쪽 순서의 호출 경로. 예) MemberController.searchMemberV1 > MemberRepository.search
+     */
+    public static String path() {
+        StringJoiner path = new StringJoiner(" > ").setEmptyValue("-");
+        for (Iterator<Frame> it = FRAMES.get().descendingIterator(); it.hasNext(); ) {
+            path.add(it.next().getName());
+        }
+        return path.toString();
+    }
+
+    @Getter
+    public static class Frame {
+        private final String layer;
+        private final String name;
+        private long statements;
+        private long rows;
+        private final Map<String, Integer> patterns;
+
+        private Frame(String layer, String name, Map<String, Integer> patterns) {
+            this.layer = layer;
+            this.name = name;
+            this.patterns = patterns;
+        }
+
+        /**
+         * 두 번 이상 실행된 SQL, 많이 실행된 순서. (N+1 의 반복되는 쿼리)
+         */
+        public List<Map.Entry<String, Integer>> getRepeatedPatterns() {
+            if (patterns == null) {
+                return Collections.emptyList();
+            }
+            return patterns.entrySet().stream()
+                    .filter(e -> e.getValue() > 1)
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package study.datajpa.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 레포지토리 메소드, 컨트롤러 엔드포인트별 지연시간 / JDBC 문장 수 / 읽은 행 수.
+ * {@link StatementBudget} 이 붙어 있으면 호출이 끝난 뒤 문장 수 예산도 검사한다.
+ * /actuator/metrics/query.invocation?tag=component:MemberRepository 처럼 조회한다.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class QueryMetricsAspect {
+
+    private final MeterRegistry registry;
+    private final QueryMetricsProperties properties;
+    private final StatementBudgetProperties budgetProperties;
+    private final Map<Class<?>, String> componentNames = new ConcurrentHashMap<>();
+    private final Map<Method, Integer> budgets = new ConcurrentHashMap<>();
+    // 프록시 클래스 -> 메소드 -> 미터. 호출마다 빌더로 레지스트리를 찾지 않는다
+    private final Map<Class<?>, Map<Method, Meters>> componentMeters = new ConcurrentHashMap<>();
+
+    // 스프링 데이터 레포지토리(커스텀 구현 포함)와 @Repository 클래스
+    @Around("this(org.springframework.data.repository.Repository) || @within(org.springframework.stereotype.Repository)")
+    public Object aroundRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return measure("repository", joinPoint);
+    }
+
+    @Around("@within(org.springframework.web.bind.annotation.RestController)")
+    public Object aroundController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return measure("controller", joinPoint);
+    }
+
+    private Object measure(String layer, ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!properties.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        Object proxy = joinPoint.getThis();
+        String component = componentName(proxy);
+        String method = joinPoint.getSignature().getName();
+        Method target = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        int budget = budgetOf(layer, target);
+
+        QueryFrames.Frame frame = QueryFrames.push(layer, component + "." + method, budget > 0);
+        long start = System.nanoTime();
+        String exception = "none";
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            QueryFrames.pop(frame);
+            Meters meters = metersOf(proxy, target, layer, component, method);
+            meters.invocation(exception).record(elapsed, TimeUnit.NANOSECONDS);
+            meters.statements.record(frame.getStatements());
+            meters.rows.record(frame.getRows());
+        }
+
+        if (budget > 0) {
+            StatementBudgets.check(frame, budget, budgetProperties.getMode());
+        }
+        return result;
+    }
+
+    /**
+     * 메소드 -> 타입 순서로 @StatementBudget 을 찾는다. 컨트롤러는 없으면 기본 요청 예산. (0 이면 검사 안함)
+     */
+    private int budgetOf(String layer, Method method) {
+        int declared = budgets.computeIfAbsent(method, m -> {
+            StatementBudget budget = AnnotatedElementUtils.findMergedAnnotation(m, StatementBudget.class);
+            if (budget == null) {
+                budget = AnnotatedElementUtils.findMergedAnnotation(m.getDeclaringClass(), StatementBudget.class);
+            }
+            return budget != null ? budget.value() : 0;
+        });
+        if (declared == 0 && "controller".equals(layer)) {
+            return budgetProperties.getDefaultRequestBudget();
+        }
+        return declared;
+    }
+
+    private Meters metersOf(Object proxy, Method target, String layer, String component, String method) {
+        return componentMeters.computeIfAbsent(proxy.getClass(), type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(target, m -> new Meters(Tags.of("layer", layer, "component", component, "method", method)));
+    }
+
+    /**
+     * 스프링 데이터 레포지토리는 프록시이므로 직접 만든 레포지토리 인터페이스 이름을 쓴다. (MemberRepository)
+     */
+    private String componentName(Object proxy) {
+        return componentNames.computeIfAbsent(proxy.getClass(), type -> {
+            for (Class<?> candidate : ClassUtils.getAllInterfacesForClassAsSet(type)) {
+                if (Repository.class.isAssignableFrom(candidate)
+                        && !candidate.getName().startsWith("org.springframework.")) {
+                    return candidate.getSimpleName();
+                }
+            }
+            return ClassUtils.getUserClass(type).getSimpleName();
+        });
+    }
+
+    /**
+     * 한 (컴포넌트, 메소드) 의 미터. query.invocation 은 예외 종류마다 하나씩 만든다.
+     */
+    private class Meters {
+
+        private final Tags tags;
+        private final Map<String, Timer> invocations = new ConcurrentHashMap<>();
+        private final DistributionSummary statements;
+        private final DistributionSummary rows;
+
+        Meters(Tags tags) {
+            this.tags = tags;
+            this.statements = DistributionSummary.builder("query.statements").tags(tags).register(registry);
+            this.rows = DistributionSummary.builder("query.rows").tags(tags).register(registry);
+        }
+
+        Timer invocation(String exception) {
+            return invocations.computeIfAbsent(exception, e -> Timer.builder("query.invocation")
+                    .tags(tags)
+                    .tag("exception", e)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+}
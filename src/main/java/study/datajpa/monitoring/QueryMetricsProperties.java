@@ -0,0 +1,18 @@
+package study.datajpa.monitoring;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "monitoring.query")
+public class QueryMetricsProperties {
+
+    private boolean enabled = true;
+    // 이보다 오래 걸린 SQL 은 호출한 레포지토리 메소드와 함께 로그를 남긴다
+    private Duration slowThreshold = Duration.ofMillis(200);
+}
@@ -0,0 +1,44 @@
+package study.datajpa.monitoring;
+
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * p6spy 이벤트 리스너 - 빈으로 등록하면 p6spy-spring-boot-starter 가 데이터소스 프록시에 붙여준다.
+ * 실행한 문장 수, 읽은 행 수를 현재 호출 프레임에 기록하고 느린 SQL 은 호출 경로와 함께 남긴다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SqlStatementListener extends JdbcEventListener {
+
+    private final QueryMetricsProperties properties;
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        QueryFrames.recordStatement(statementInformation.getSql());
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(timeElapsedNanos);
+        if (elapsedMillis >= properties.getSlowThreshold().toMillis()) {
+            log.warn("slow query {}ms [{}] {}", elapsedMillis, QueryFrames.path(), statementInformation.getSql());
+        }
+    }
+
+    @Override
+    public void onAfterResultSetNext(ResultSetInformation resultSetInformation, long timeElapsedNanos,
+                                     boolean hasNext, SQLException e) {
+        if (hasNext && properties.isEnabled()) {
+            QueryFrames.recordRow();
+        }
+    }
+}
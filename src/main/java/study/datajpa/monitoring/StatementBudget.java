@@ -0,0 +1,19 @@
+package study.datajpa.monitoring;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 레포지토리 메소드, 컨트롤러 엔드포인트 한 번 호출에 허용되는 JDBC 문장 수.
+ * 넘으면 monitoring.statement-budget.mode 에 따라 예외(FAIL) 또는 경고 로그(WARN).
+ */
+@Documented
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StatementBudget {
+
+    int value();
+}
@@ -0,0 +1,11 @@
+package study.datajpa.monitoring;
+
+/**
+ * 문장 수 예산 초과 - FAIL 모드(테스트)에서 발생한다.
+ */
+public class StatementBudgetExceededException extends RuntimeException {
+
+    public StatementBudgetExceededException(String message) {
+        super(message);
+    }
+}
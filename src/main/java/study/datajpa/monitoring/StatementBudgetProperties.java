@@ -0,0 +1,18 @@
+package study.datajpa.monitoring;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "monitoring.statement-budget")
+public class StatementBudgetProperties {
+
+    public enum Mode { WARN, FAIL }
+
+    private Mode mode = Mode.WARN;
+    // @StatementBudget 이 없는 컨트롤러 엔드포인트(HTTP 요청)의 기본 예산, 0 이면 검사하지 않는다
+    private int defaultRequestBudget = 0;
+}
@@ -0,0 +1,82 @@
+package study.datajpa.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 문장 수 예산 검사.
+ *
+ * <pre>
+ * try (StatementBudgets.Tracker tracker = StatementBudgets.track("loop")) {
+ *     ...
+ *     tracker.assertAtMost(2);
+ * }
+ * </pre>
+ */
+@Slf4j
+public final class StatementBudgets {
+
+    private StatementBudgets() {
+    }
+
+    /**
+     * 현재 스레드에서 close 할 때까지 실행된 JDBC 문장을 센다.
+     */
+    public static Tracker track(String name) {
+        return new Tracker(QueryFrames.push("budget", name, true));
+    }
+
+    static void check(QueryFrames.Frame frame, int budget, StatementBudgetProperties.Mode mode) {
+        if (frame.getStatements() <= budget) {
+            return;
+        }
+        String message = message(frame, budget);
+        if (mode == StatementBudgetProperties.Mode.FAIL) {
+            throw new StatementBudgetExceededException(message);
+        }
+        log.warn(message);
+    }
+
+    private static String message(QueryFrames.Frame frame, int budget) {
+        StringBuilder message = new StringBuilder()
+                .append("statement budget exceeded: ").append(frame.getName())
+                .append(" executed ").append(frame.getStatements())
+                .append(" statements (budget ").append(budget).append(")");
+        List<Map.Entry<String, Integer>> repeated = frame.getRepeatedPatterns();
+        for (Map.Entry<String, Integer> pattern : repeated) {
+            message.append("\n  ").append(pattern.getValue()).append("x ").append(pattern.getKey());
+        }
+        return message.toString();
+    }
+
+    public static class Tracker implements AutoCloseable {
+
+        private final QueryFrames.Frame frame;
+
+        private Tracker(QueryFrames.Frame frame) {
+            this.frame = frame;
+        }
+
+        public long getStatements() {
+            return frame.getStatements();
+        }
+
+        public List<Map.Entry<String, Integer>> getRepeatedPatterns() {
+            return frame.getRepeatedPatterns();
+        }
+
+        /**
+         * 넘으면 반복된 SQL 과 함께 StatementBudgetExceededException
+         */
+        public void assertAtMost(int budget) {
+            check(frame, budget, StatementBudgetProperties.Mode.FAIL);
+        }
+
+        @Override
+        public void close() {
+            QueryFrames.pop(frame);
+        }
+    }
+}
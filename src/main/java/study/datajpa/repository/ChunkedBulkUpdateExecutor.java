@@ -0,0 +1,167 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.BulkUpdateCheckpoint;
+import study.datajpa.entity.MemberBulkUpdatedEvent;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * bulkAgePlus 를 member_id 범위 청크로 나눠서 청크마다 별도 트랜잭션으로 커밋한다.
+ * 한 문장이 전체 테이블에 락을 오래 잡지 않고, 진행 위치(BulkUpdateCheckpoint)가 청크와 함께 커밋되므로
+ * 같은 jobId 로 다시 실행하면 마지막으로 끝난 범위 다음부터 이어서 처리한다.
+ */
+@Slf4j
+@Component
+public class ChunkedBulkUpdateExecutor {
+
+    private final EntityManager em;
+    private final TransactionTemplate chunkTx;
+    private final ChunkedBulkUpdateProperties properties;
+    private final ApplicationEventPublisher publisher;
+
+    private static final Map<String, Object> LOCK_TIMEOUT = Collections.singletonMap(
+            "javax.persistence.lock.timeout", Integer.valueOf(MemberRepository.LOCK_TIMEOUT_MILLIS));
+
+    private final Counter updatedRows;
+    private final Timer chunkTimer;
+    private final Timer lockWait;
+
+    public ChunkedBulkUpdateExecutor(EntityManager em,
+                                     PlatformTransactionManager transactionManager,
+                                     ChunkedBulkUpdateProperties properties,
+                                     ApplicationEventPublisher publisher,
+                                     MeterRegistry registry) {
+        this.em = em;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = properties;
+        this.publisher = publisher;
+        this.updatedRows = registry.counter("member.bulk.update.rows", "operation", "bulkAgePlus");
+        this.chunkTimer = Timer.builder("member.bulk.update.chunk")
+                .tag("operation", "bulkAgePlus")
+                .register(registry);
+        this.lockWait = registry.timer("member.lock.wait", "operation", "bulkAgePlus.checkpoint");
+    }
+
+    /**
+     * age 이상인 회원의 나이를 1 올린다. jobId 가 같으면 이어서 실행하고, 이미 끝난 작업이면 아무것도 하지 않는다.
+     * @throws IllegalArgumentException 같은 jobId 를 다른 age 로 시작한 적이 있을 때
+     */
+    public Result bulkAgePlus(String jobId, int age) {
+        long start = System.nanoTime();
+        BulkUpdateCheckpoint checkpoint = chunkTx.execute(status -> findOrCreateCheckpoint(jobId, age));
+        boolean resumed = checkpoint.getChunks() > 0;
+        if (resumed && !checkpoint.isCompleted()) {
+            log.info("resume bulk update {} after member_id {}", jobId, checkpoint.getLastMemberId());
+        }
+
+        long rowsBefore = checkpoint.getUpdatedRows();
+        long rowsSoFar = rowsBefore;
+        while (!checkpoint.isCompleted()) {
+            checkpoint = chunkTimer.record(() -> chunkTx.execute(status -> updateNextChunk(jobId)));
+            updatedRows.increment(checkpoint.getUpdatedRows() - rowsSoFar);
+            rowsSoFar = checkpoint.getUpdatedRows();
+
+            long rowsThisRun = rowsSoFar - rowsBefore;
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            log.info("bulk update {} - chunk {}, member_id <= {}/{}, updated {} rows, {} rows/s",
+                    jobId, checkpoint.getChunks(), checkpoint.getLastMemberId(), checkpoint.getMaxMemberId(),
+                    checkpoint.getUpdatedRows(), String.format("%.0f", seconds == 0 ? 0 : rowsThisRun / seconds));
+        }
+
+        return new Result(jobId, checkpoint.getUpdatedRows(), checkpoint.getChunks(), resumed,
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private BulkUpdateCheckpoint findOrCreateCheckpoint(String jobId, int age) {
+        BulkUpdateCheckpoint checkpoint = em.find(BulkUpdateCheckpoint.class, jobId);
+        if (checkpoint != null) {
+            // 다른 조건으로 이어서 실행하면 앞 청크와 뒤 청크의 대상이 달라진다
+            if (checkpoint.getAge() != age) {
+                throw new IllegalArgumentException("bulk update " + jobId + " was started with age "
+                        + checkpoint.getAge() + ", cannot resume with age " + age);
+            }
+            return checkpoint;
+        }
+        Object[] range = em.createQuery("select min(m.id), max(m.id) from Member m", Object[].class)
+                .getSingleResult();
+        long min = range[0] != null ? (Long) range[0] : 0L;
+        long max = range[1] != null ? (Long) range[1] : 0L;
+        checkpoint = new BulkUpdateCheckpoint(jobId, age, min - 1, max);
+        em.persist(checkpoint);
+        return checkpoint;
+    }
+
+    private BulkUpdateCheckpoint updateNextChunk(String jobId) {
+        // 같은 jobId 를 동시에 실행해도 한 청크를 두 번 처리하지 않도록 진행 위치에 락을 건다
+        BulkUpdateCheckpoint checkpoint = lockWait.record(() -> em.find(BulkUpdateCheckpoint.class, jobId,
+                LockModeType.PESSIMISTIC_WRITE, LOCK_TIMEOUT));
+        if (checkpoint.isCompleted()) {
+            return checkpoint;
+        }
+
+        int age = checkpoint.getAge();
+        long from = checkpoint.getLastMemberId();
+        long to = chunkEnd(from, checkpoint.getMaxMemberId());
+
+        int rows = em.createQuery(
+                "update Member m set m.age = m.age + 1, m.version = m.version + 1 " +
+                        "where m.age >= :age and m.id > :from and m.id <= :to")
+                .setParameter("age", age)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .executeUpdate();
+
+        checkpoint.advance(to, rows);
+        em.flush();
+        em.clear(); // @Modifying(clearAutomatically = true) 와 같은 효과를 청크마다
+        publisher.publishEvent(new MemberBulkUpdatedEvent(age));
+        return checkpoint;
+    }
+
+    /**
+     * from 다음 chunkSize 번째 member_id. 남은 회원이 chunkSize 보다 적으면 maxMemberId.
+     */
+    private long chunkEnd(long from, long maxMemberId) {
+        List<Long> ids = em.createQuery(
+                "select m.id from Member m where m.id > :from and m.id <= :max order by m.id", Long.class)
+                .setParameter("from", from)
+                .setParameter("max", maxMemberId)
+                .setFirstResult(properties.getChunkSize() - 1)
+                .setMaxResults(1)
+                .getResultList();
+        return ids.isEmpty() ? maxMemberId : ids.get(0);
+    }
+
+    @Getter
+    public static class Result {
+        private final String jobId;
+        private final long updatedRows;
+        private final int chunks;
+        private final boolean resumed;
+        private final Duration elapsed;
+
+        public Result(String jobId, long updatedRows, int chunks, boolean resumed, Duration elapsed) {
+            this.jobId = jobId;
+            this.updatedRows = updatedRows;
+            this.chunks = chunks;
+            this.resumed = resumed;
+            this.elapsed = elapsed;
+        }
+    }
+}
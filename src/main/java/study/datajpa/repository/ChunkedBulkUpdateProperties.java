@@ -0,0 +1,17 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "member.bulk-update")
+public class ChunkedBulkUpdateProperties {
+
+    /**
+     * 한 트랜잭션에서 갱신할 최대 회원 수 (member_id 범위로 나눈다)
+     */
+    private int chunkSize = 10_000;
+}
@@ -0,0 +1,139 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * 페이징 count 쿼리를 컨텐츠 쿼리와 동시에 실행한다.
+ * count 는 별도 스레드의 읽기 전용 트랜잭션(= 별도 커넥션)에서 돈다. 그래서 호출한 쪽이 읽기-쓰기 트랜잭션 안이면
+ * 그 트랜잭션의 커밋 전 행이 count 에서 빠지므로 동시 실행하지 않는다.
+ */
+@Component
+public class ConcurrentCountExecutor implements DisposableBean {
+
+    private final ConcurrentCountProperties properties;
+    private final ThreadPoolExecutor executor;
+    private final TransactionTemplate readOnlyTx;
+
+    private final Counter submitted;
+    private final Counter saturated;
+    private final Counter timeouts;
+    private final Counter readWriteCallers;
+
+    public ConcurrentCountExecutor(ConcurrentCountProperties properties,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry registry) {
+        this.properties = properties;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                properties.getPoolSize(), properties.getPoolSize(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "member-count-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.readOnlyTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        new ExecutorServiceMetrics(executor, "member.count.executor", Tags.empty()).bindTo(registry);
+        this.submitted = registry.counter("member.count.concurrent", "result", "submitted");
+        this.saturated = registry.counter("member.count.concurrent", "result", "saturated");
+        this.timeouts = registry.counter("member.count.concurrent", "result", "timeout");
+        this.readWriteCallers = registry.counter("member.count.concurrent", "result", "read-write-tx");
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 호출한 스레드에서 동시 실행할 수 있는지. 비활성이거나 읽기-쓰기 트랜잭션 안이면 false
+     */
+    public boolean isEnabledForCaller() {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            readWriteCallers.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public int getTimeoutMillis() {
+        return (int) properties.getTimeout().toMillis();
+    }
+
+    /**
+     * @return 비활성이거나 풀이 포화 상태면 null - 호출한 쪽에서 순차 실행한다.
+     */
+    public Future<Long> submit(LongSupplier count) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        try {
+            Future<Long> future = executor.submit(() -> readOnlyTx.execute(status -> count.getAsLong()));
+            submitted.increment();
+            return future;
+        } catch (RejectedExecutionException e) {
+            saturated.increment();
+            return null;
+        }
+    }
+
+    /**
+     * count 결과를 기다린다. 시간 초과나 인터럽트면 count 를 취소하고, count 쪽 예외는 그대로 다시 던진다.
+     */
+    public long await(Future<Long> future) {
+        try {
+            return future.get(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.increment();
+            throw new QueryTimeoutException("count query did not finish within " + properties.getTimeout(), e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("interrupted while waiting for count query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
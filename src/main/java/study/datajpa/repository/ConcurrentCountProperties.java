@@ -0,0 +1,19 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "member.paging.concurrent-count")
+public class ConcurrentCountProperties {
+
+    private boolean enabled = false;
+    private int poolSize = 4;
+    private int queueCapacity = 16;   // 넘치면 순차 실행으로 대체
+    private Duration timeout = Duration.ofSeconds(5);
+}
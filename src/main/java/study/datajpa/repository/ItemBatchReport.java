@@ -0,0 +1,34 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Getter
+@ToString
+public class ItemBatchReport {
+
+    private final List<Duration> batchTimings = new ArrayList<>();
+    private int requestedRows;
+    private int insertedRows;
+    private int unknownRows; // 드라이버가 건수를 알려주지 않아 insert 여부를 모르는 행 (SUCCESS_NO_INFO)
+
+    void addBatch(int requested, int inserted, int unknown, Duration elapsed) {
+        requestedRows += requested;
+        insertedRows += inserted;
+        unknownRows += unknown;
+        batchTimings.add(elapsed);
+    }
+
+    public List<Duration> getBatchTimings() {
+        return Collections.unmodifiableList(batchTimings);
+    }
+
+    public Duration getTotal() {
+        return batchTimings.stream().reduce(Duration.ZERO, Duration::plus);
+    }
+}
@@ -0,0 +1,19 @@
+package study.datajpa.repository;
+
+import study.datajpa.entity.Item;
+
+import java.util.List;
+
+public interface ItemRepositoryCustom {
+
+    /**
+     * JDBC 배치 insert. saveAll 과 달리 아이디마다 select(merge)를 하지 않는다.
+     * 이미 있는 아이디가 섞여 있으면 예외가 발생한다.
+     */
+    ItemBatchReport insertAll(List<Item> items);
+
+    /**
+     * 없는 아이디만 insert 한다. (Item 은 아이디 외에 바꿀 컬럼이 없으므로 upsert = insert if absent)
+     */
+    ItemBatchReport upsertAll(List<Item> items);
+}
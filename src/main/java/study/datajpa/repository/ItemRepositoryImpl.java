@@ -0,0 +1,82 @@
+package study.datajpa.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.entity.Item;
+
+import javax.persistence.EntityManager;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Slf4j
+@RequiredArgsConstructor
+public class ItemRepositoryImpl implements ItemRepositoryCustom {
+
+    private static final String INSERT_SQL = "insert into item (id, created_date) values (?, ?)";
+    // 확인과 insert 를 한 문장(MERGE)으로 - 이미 있는 행은 건드리지 않는다 (MERGE ... KEY(id) 는 기존 행의 created_date 를 덮어쓴다)
+    private static final String INSERT_IF_ABSENT_SQL =
+            "merge into item t using dual on t.id = ? " +
+                    "when not matched then insert (id, created_date) values (?, ?)";
+
+    private final EntityManager em;
+    private final JdbcTemplate jdbcTemplate;
+    private final ItemBatchProperties properties;
+
+    @Override
+    @Transactional
+    public ItemBatchReport insertAll(List<Item> items) {
+        return execute(items, INSERT_SQL, false);
+    }
+
+    @Override
+    @Transactional
+    public ItemBatchReport upsertAll(List<Item> items) {
+        return execute(items, INSERT_IF_ABSENT_SQL, true);
+    }
+
+    private ItemBatchReport execute(List<Item> items, String sql, boolean ifAbsent) {
+        ItemBatchReport report = new ItemBatchReport();
+        LocalDateTime now = LocalDateTime.now(); // JDBC 로 넣으므로 @CreatedDate 대신 직접 채운다
+        Timestamp createdDate = Timestamp.valueOf(now);
+        int batchSize = properties.getSize();
+        // 같은 트랜잭션에서 JPA 로 저장한 Item 을 먼저 내보낸다 - 그래야 배치가 그 행을 보고, 커밋 때 같은 id 로 다시 insert 하지 않는다
+        em.flush();
+
+        for (int from = 0; from < items.size(); from += batchSize) {
+            List<Item> batch = items.subList(from, Math.min(from + batchSize, items.size()));
+            long start = System.nanoTime();
+            int[][] results = jdbcTemplate.batchUpdate(sql, batch, batch.size(), (ps, item) -> {
+                int index = 1;
+                if (ifAbsent) {
+                    ps.setString(index++, item.getId());
+                }
+                ps.setString(index++, item.getId());
+                ps.setTimestamp(index, createdDate);
+            });
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            int inserted = 0;
+            int unknown = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int count = results[0][i];
+                // 드라이버가 건수를 모르면 SUCCESS_NO_INFO(-2) 를 돌려준다.
+                // 그냥 insert 는 실패하지 않았으면 들어간 것이지만, ifAbsent 는 이미 있어서 건너뛰었을 수도 있다
+                if (count == Statement.SUCCESS_NO_INFO && ifAbsent) {
+                    unknown++;
+                } else if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                    inserted++;
+                    batch.get(i).markCreated(now);
+                }
+            }
+            report.addBatch(batch.size(), inserted, unknown, elapsed);
+            log.debug("item batch {} rows ({} inserted, {} unknown) in {}ms",
+                    batch.size(), inserted, unknown, elapsed.toMillis());
+        }
+        return report;
+    }
+}
@@ -0,0 +1,286 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberAgesChangedEvent;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 회원 나이 증감을 모아 두었다가 한꺼번에 update 한다. (write-behind)
+ * 같은 회원에 대한 증감은 LongAdder 하나로 합쳐지므로 초당 수천 번 올려도 flush 마다 회원당 update 한 번이다.
+ * flush 는 현재 세대(map)를 새 세대로 바꿔 끼운 뒤, 옛 세대에 쓰던 스레드가 끝나기를 기다렸다가 읽는다.
+ * 쓰는 쪽은 락을 잡지 않는다.
+ *
+ * 정상 종료 시에는 웹 서버가 멈춘 뒤 남은 증감을 모두 flush 한다.
+ * 프로세스가 강제로 죽으면 아직 flush 하지 않은 증감(최대 flush-interval 만큼)은 사라진다.
+ */
+@Slf4j
+@Component
+public class MemberAgeWriteBehind implements SmartLifecycle {
+
+    private static final String UPDATE_SQL =
+            "update member set age = age + ?, version = version + 1 where member_id = ?";
+
+    private final MemberWriteBehindProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate flushTx;
+    private final EntityManagerFactory emf;
+    private final ApplicationEventPublisher publisher;
+
+    private final AtomicReference<Generation> current = new AtomicReference<>(new Generation());
+    private volatile Generation flushing; // flush 중인 세대 - write 가 끝날 때까지 pendingAge 에 포함한다
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+    private volatile ScheduledFuture<?> periodicFlush;
+    private volatile boolean running;
+
+    private final Counter increments;
+    private final Counter flushedRows;
+    private final Counter failures;
+    private final Timer flushTimer;
+
+    public MemberAgeWriteBehind(MemberWriteBehindProperties properties,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                EntityManagerFactory emf,
+                                ApplicationEventPublisher publisher,
+                                MeterRegistry registry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushTx = new TransactionTemplate(transactionManager);
+        this.flushTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.emf = emf;
+        this.publisher = publisher;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("member.write.behind.pending", current, c -> c.get().deltas.size()).register(registry);
+        this.increments = registry.counter("member.write.behind.increments");
+        this.flushedRows = registry.counter("member.write.behind.rows");
+        this.failures = registry.counter("member.write.behind.failures");
+        this.flushTimer = registry.timer("member.write.behind.flush");
+    }
+
+    /**
+     * 회원 나이에 delta 를 더한다. 비활성이면 바로 update 한다.
+     */
+    public void addAge(long memberId, int delta) {
+        increments.increment();
+        if (!properties.isEnabled()) {
+            write(Collections.singletonMap(memberId, (long) delta));
+            return;
+        }
+        while (true) {
+            Generation generation = current.get();
+            generation.writers.incrementAndGet();
+            try {
+                if (current.get() != generation) {
+                    continue; // 방금 flush 로 교체됨 - 새 세대에 다시 쓴다
+                }
+                generation.deltas.computeIfAbsent(memberId, id -> new LongAdder()).add(delta);
+                if (generation.deltas.size() >= properties.getMaxPendingMembers()) {
+                    requestFlush();
+                }
+                return;
+            } finally {
+                generation.writers.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 아직 DB 에 반영되지 않은 증감 (flush 중인 세대 포함)
+     */
+    public long pendingAge(long memberId) {
+        Generation live = current.get();
+        Generation draining = flushing;
+        long pending = live.pendingAge(memberId);
+        if (draining != null && draining != live) {
+            pending += draining.pendingAge(memberId);
+        }
+        return pending;
+    }
+
+    public int pendingMembers() {
+        return current.get().deltas.size();
+    }
+
+    /**
+     * 쌓인 증감을 배치 update 로 반영한다. 실패하면 증감을 다시 버퍼에 돌려놓는다.
+     * @return update 한 회원 수
+     */
+    public synchronized int flush() {
+        // 교체 전에 flushing 으로 걸어 두어 pendingAge 에서 증감이 잠깐이라도 빠지지 않게 한다
+        Generation drained = current.get();
+        flushing = drained;
+        current.set(new Generation());
+        try {
+            return flush(drained);
+        } finally {
+            flushing = null;
+        }
+    }
+
+    private int flush(Generation drained) {
+        while (drained.writers.get() > 0) {
+            Thread.onSpinWait(); // 교체 직전에 들어온 쓰기가 끝나기를 기다린다 (add 한 번이라 금방 끝난다)
+        }
+
+        Map<Long, Long> deltas = new ConcurrentHashMap<>();
+        drained.deltas.forEach((id, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                deltas.put(id, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            flushTimer.record(() -> write(deltas));
+            return deltas.size();
+        } catch (RuntimeException e) {
+            failures.increment();
+            deltas.forEach((id, delta) -> current.get().deltas.computeIfAbsent(id, key -> new LongAdder()).add(delta));
+            log.warn("member write-behind flush failed, {} members kept for the next flush", deltas.size(), e);
+            throw e;
+        }
+    }
+
+    private void write(Map<Long, Long> deltas) {
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(deltas.entrySet());
+        flushTx.executeWithoutResult(status -> {
+            // update 전에 행을 잠그고 나이를 읽어 두면 update 후 나이는 정확히 before + delta 다
+            Map<Long, MemberAgesChangedEvent.Change> changes = lockAndReadAges(entries);
+            jdbcTemplate.batchUpdate(UPDATE_SQL, entries, properties.getBatchSize(), (ps, entry) -> {
+                ps.setLong(1, entry.getValue());
+                ps.setLong(2, entry.getKey());
+            });
+            // 바뀐 회원만 알려서 캐시, 인메모리 인덱스가 테이블을 다시 읽지 않고 그 회원만 고치게 한다
+            if (!changes.isEmpty()) {
+                publisher.publishEvent(new MemberAgesChangedEvent(changes));
+            }
+        });
+        // JDBC 로 바꿨으므로 2차 캐시의 회원 엔티티는 직접 지운다
+        entries.forEach(entry -> emf.getCache().evict(Member.class, entry.getKey()));
+        flushedRows.increment(entries.size());
+    }
+
+    /**
+     * 바뀔 회원의 (팀, update 전/후 나이). 지워진 회원은 빠진다.
+     */
+    private Map<Long, MemberAgesChangedEvent.Change> lockAndReadAges(List<Map.Entry<Long, Long>> entries) {
+        Map<Long, MemberAgesChangedEvent.Change> changes = new HashMap<>();
+        int batchSize = properties.getBatchSize();
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            List<Map.Entry<Long, Long>> batch = entries.subList(from, Math.min(from + batchSize, entries.size()));
+            Map<Long, Long> batchDeltas = new HashMap<>();
+            batch.forEach(entry -> batchDeltas.put(entry.getKey(), entry.getValue()));
+            String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+            jdbcTemplate.query("select member_id, team_id, age from member where member_id in (" + placeholders + ") for update",
+                    rs -> {
+                        long id = rs.getLong(1);
+                        int before = rs.getInt(3);
+                        // 넘치면 update 가 실패하고 트랜잭션이 롤백되므로 이벤트도 버려진다
+                        int after = (int) (before + batchDeltas.get(id));
+                        changes.put(id, new MemberAgesChangedEvent.Change(rs.getLong(2), before, after));
+                    },
+                    batch.stream().map(Map.Entry::getKey).toArray());
+        }
+        return changes;
+    }
+
+    private void requestFlush() {
+        if (running && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::scheduledFlush);
+        }
+    }
+
+    private void scheduledFlush() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // 로그는 flush 에서 남겼다 - 다음 주기에 다시 시도
+        }
+    }
+
+    @Override
+    public void start() {
+        long interval = properties.getFlushInterval().toMillis();
+        periodicFlush = scheduler.scheduleWithFixedDelay(this::scheduledFlush, interval, interval, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    /**
+     * 웹 서버(phase Integer.MAX_VALUE - 1)가 멈춘 뒤, 데이터소스가 닫히기 전에 남은 증감을 flush 한다.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (periodicFlush != null) {
+            periodicFlush.cancel(false);
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(properties.getFlushInterval().toMillis() + 5_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            log.info("member write-behind flushed {} members on shutdown", flush());
+        } catch (RuntimeException e) {
+            log.error("member write-behind could not flush {} members on shutdown", pendingMembers(), e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private static class Generation {
+        private final Map<Long, LongAdder> deltas = new ConcurrentHashMap<>();
+        private final AtomicInteger writers = new AtomicInteger();
+
+        private long pendingAge(long memberId) {
+            LongAdder adder = deltas.get(memberId);
+            return adder != null ? adder.sum() : 0;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "member.bulk-load")
+public class MemberBulkLoadProperties {
+
+    /**
+     * 한 트랜잭션에서 persist -> flush -> clear 하는 건수. hibernate.jdbc.batch_size 의 배수로 맞춘다.
+     */
+    private int chunkSize = 1000;
+}
@@ -0,0 +1,112 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.EntityChangeListener;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberBulkLoadedEvent;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 대량 회원 적재. chunkSize 단위로 트랜잭션을 나눠서 persist -> flush(JDBC 배치) -> clear 한다.
+ * 아이디는 pooled-lo 시퀀스라 건마다 시퀀스를 호출하지 않는다.
+ * 회원 i 는 username "member" + i, age i % 100, 팀 i % 팀 수 로 만들어진다.
+ *
+ * 행마다 캐시 무효화와 read model 반영을 하지 않도록 적재 중에는 엔티티 리스너 이벤트를 끄고,
+ * 끝나면 MemberBulkLoadedEvent 로 한번에 다시 만든다. (그 전까지 캐시와 read model 은 적재 전 데이터를 보여줄 수 있다)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberBulkLoader {
+
+    private final EntityManager em;
+    private final PlatformTransactionManager transactionManager;
+    private final MemberBulkLoadProperties properties;
+    private final ApplicationEventPublisher publisher;
+
+    public Report load(List<String> teamNames, int memberCount) {
+        Report report = EntityChangeListener.runSuspended(() -> insert(teamNames, memberCount));
+        publisher.publishEvent(new MemberBulkLoadedEvent(report.getTeams(), report.getMembers()));
+        return report;
+    }
+
+    private Report insert(List<String> teamNames, int memberCount) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long start = System.nanoTime();
+
+        List<Long> teamIds = tx.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            for (String teamName : teamNames) {
+                Team team = new Team(teamName);
+                em.persist(team);
+                ids.add(team.getId());
+            }
+            em.flush();
+            em.clear();
+            return ids;
+        });
+
+        int chunkSize = properties.getChunkSize();
+        for (int from = 0; from < memberCount; from += chunkSize) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(from + chunkSize, memberCount);
+            tx.executeWithoutResult(status -> persistMembers(teamIds, chunkFrom, chunkTo));
+
+            if (log.isDebugEnabled()) {
+                log.debug("bulk load {}/{} members, {} rows/s", chunkTo, memberCount,
+                        String.format("%.0f", rowsPerSecond(chunkTo, System.nanoTime() - start)));
+            }
+        }
+
+        Report report = new Report(teamIds.size(), memberCount, Duration.ofNanos(System.nanoTime() - start));
+        log.info("bulk load finished - teams={}, members={}, elapsed={}ms, {} rows/s",
+                report.getTeams(), report.getMembers(), report.getElapsed().toMillis(),
+                String.format("%.0f", report.getRowsPerSecond()));
+        return report;
+    }
+
+    private void persistMembers(List<Long> teamIds, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Member member = new Member("member" + i, i % 100);
+            if (!teamIds.isEmpty()) {
+                // changeTeam 은 team.members 컬렉션을 초기화하므로 참조만 건다
+                member.setTeam(em.getReference(Team.class, teamIds.get(i % teamIds.size())));
+            }
+            em.persist(member);
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private static double rowsPerSecond(long rows, long elapsedNanos) {
+        return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Getter
+    public static class Report {
+        private final int teams;
+        private final long members;
+        private final Duration elapsed;
+
+        public Report(int teams, long members, Duration elapsed) {
+            this.teams = teams;
+            this.members = members;
+            this.elapsed = elapsed;
+        }
+
+        public double getRowsPerSecond() {
+            return rowsPerSecond(teams + members, elapsed.toNanos());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package study.datajpa.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import study.datajpa.entity.MemberBulkUpdatedEvent;
+
+/**
+ * bulkAgePlus 는 영속성 컨텍스트와 엔티티 리스너를 거치지 않으므로 실행 후 이벤트를 직접 발행한다.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class MemberBulkUpdateEventAspect {
+
+    private final ApplicationEventPublisher publisher;
+
+    @AfterReturning("execution(int study.datajpa.repository.*.bulkAgePlus(int)) && args(age)")
+    public void afterBulkAgePlus(int age) {
+        publisher.publishEvent(new MemberBulkUpdatedEvent(age));
+    }
+}
@@ -1,19 +1,26 @@
 package study.datajpa.repository;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import study.datajpa.entity.Member;
+import study.datajpa.repository.index.MemberAgeHistogram;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 
 @Repository
+@RequiredArgsConstructor
 public class MemberJpaRepository {
 
     @PersistenceContext
     private EntityManager em;
 
+    private final MemberAgeHistogram ageHistogram;
+
     public Member save(Member member) {
         em.persist(member);
         return member;
@@ -51,6 +58,14 @@ public class MemberJpaRepository {
     }
 
     public long totalCount(int age) {
+        // 히스토그램은 커밋된 데이터만 센다 - 먼저 플러시해서 이 트랜잭션이 바꾼 게 있으면 SQL 로 센다
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            em.flush();
+        }
+        OptionalLong count = ageHistogram.countByAge(age);
+        if (count.isPresent()) {
+            return count.getAsLong();
+        }
         return em.createQuery("select count(m) from Member m where m.age = :age",
                         Long.class)
                 .setParameter("age", age)
@@ -59,7 +74,7 @@ public class MemberJpaRepository {
 
     public int bulkAgePlus(int age) {
         return em.createQuery(
-                "update Member m set m.age = m.age + 1 " +
+                "update Member m set m.age = m.age + 1, m.version = m.version + 1 " +
                         "where m.age >= :age")
                 .setParameter("age", age)
                 .executeUpdate();
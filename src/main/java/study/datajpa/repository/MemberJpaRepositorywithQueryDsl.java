@@ -2,10 +2,10 @@ package study.datajpa.repository;
 
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.dto.MemberSearchCondition;
@@ -26,6 +26,7 @@ public class MemberJpaRepositorywithQueryDsl {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchQueries searchQueries;
 
     // Bean 등록을 안했을 때
 //    public MemberJpaRepositorywithQueryDsl(EntityManager em) {
@@ -66,6 +67,7 @@ public class MemberJpaRepositorywithQueryDsl {
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberDto> searchByBuilder(MemberSearchCondition cond) {
 
         BooleanBuilder builder = new BooleanBuilder();
@@ -96,38 +98,9 @@ public class MemberJpaRepositorywithQueryDsl {
                 .fetch();
     }
 
+    // where 다중 파라미터 - MemberRepository 의 검색과 같은 조건식(MemberSearchQueries)을 쓴다
+    @Transactional(readOnly = true)
     public List<MemberDto> search(MemberSearchCondition cond) {
-        return queryFactory
-                .select(new QMemberDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(cond.getUsername()),
-                        teamnameEq(cond.getTeamname()),
-                        ageGoe(cond.getAgeGoe()),
-                        ageLoe(cond.getAgeLoe())
-                )
-                .fetch();
-    }
-
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
-    }
-
-    private BooleanExpression teamnameEq(String teamname) {
-        return hasText(teamname) ? team.name.eq(teamname) : null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-    }
-
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+        return searchQueries.content(em, cond).fetch();
     }
 }
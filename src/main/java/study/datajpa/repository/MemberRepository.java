@@ -5,8 +5,10 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.entity.Member;
+import study.datajpa.monitoring.StatementBudget;
 
 import javax.persistence.LockModeType;
 import javax.persistence.QueryHint;
@@ -14,6 +16,10 @@ import java.util.Collection;
 import java.util.List;
 
 public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom{
+
+    // 비관적 락 대기 시간 - 넘으면 PessimisticLockingFailureException (방언이 지원하는 DB 에서만)
+    String LOCK_TIMEOUT_MILLIS = "3000";
+
     List<Member> findByUsernameAndAgeGreaterThan(String username, int age);
 
     List<Member> findTop3HelloBy();
@@ -33,10 +39,18 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
 
     Slice<Member> findSliceByAge(int age, Pageable pageable);
 
+    // /members 목록용 - 엔티티를 만들지 않고 필요한 컬럼만 DTO 로 조회한다. (스냅샷, 팀 조인 없음)
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+    @Query(value = "select new study.datajpa.dto.MemberDto(m.id, m.username) from Member m",
+            countQuery = "select count(m) from Member m")
+    Page<MemberDto> findMemberDtoPage(Pageable pageable);
+
     @Modifying(clearAutomatically = true) // 영속성 컨텍스트 초기화 효과
-    @Query("update Member m set m.age = m.age + 1 where m.age >= :age")
+    @Query("update Member m set m.age = m.age + 1, m.version = m.version + 1 where m.age >= :age")
     int bulkAgePlus(@Param("age") int age);
 
+    @StatementBudget(1)
     @Query("select m from Member m left join fetch m.team")
     List<Member> findMemberFetchJoin();
 
@@ -56,7 +70,16 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
     List<Member> findReadOnlyByUsername(String username);
 
+    // 쿼리 캐시에는 식별자만 저장되고 엔티티는 2차 캐시에서 꺼낸다. member 테이블이 변경되면 무효화된다.
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    List<Member> findCachedByUsername(String username);
+
+    /**
+     * 행 락을 잡고 기다리므로 동시 수정이 잦으면 커넥션이 쌓인다.
+     * 읽고-바꾸고-쓰기는 락 없이 읽고 OptimisticRetryExecutor 로 감싸는 쪽을 먼저 고려한다.
+     */
     @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = LOCK_TIMEOUT_MILLIS))
     List<Member> findLockByUsername(String username);
 
     List<UsernameOnlyDto> findProjectionsByUsername(@Param("username") String username);
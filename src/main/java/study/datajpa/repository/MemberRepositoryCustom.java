@@ -2,14 +2,41 @@ package study.datajpa.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.MemberCursor;
+import study.datajpa.dto.MemberCursorPage;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.dto.MemberSearchCondition;
 import study.datajpa.entity.Member;
 
 import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * QueryDSL 검색 - 읽기 전용 트랜잭션이라 datasource.routing 이 켜져 있으면 레플리카에서 실행된다.
+ * (쓰기 트랜잭션 안에서 호출하면 그 트랜잭션에 참여하므로 primary)
+ */
+@Transactional(readOnly = true)
 public interface MemberRepositoryCustom {
     List<MemberDto> search(MemberSearchCondition cond);
     Page<MemberDto> searchPageSimple(MemberSearchCondition cond, Pageable pageable);
     Page<MemberDto> searchPageComplex(MemberSearchCondition cond, Pageable pageable);
+
+    /**
+     * search 결과의 나이에 MemberAgeWriteBehind 에 쌓여 있는(아직 update 되지 않은) 증감을 더해서 돌려준다.
+     * 나이 조건은 DB 에 반영된 나이로 거른다.
+     */
+    List<MemberDto> searchIncludingPending(MemberSearchCondition cond);
+
+    /**
+     * 키셋 페이징 - age, member_id 순으로 정렬하고 after 다음 위치부터 size 만큼 조회한다. (after 가 null 이면 첫 페이지)
+     * offset 을 쓰지 않으므로 깊은 페이지도 첫 페이지와 비용이 같다.
+     */
+    MemberCursorPage searchByCursor(MemberSearchCondition cond, MemberCursor after, int size);
+
+    /**
+     * search 와 같은 조건을 forward-only 커서로 한 건씩 흘려보낸다. (전체 결과를 List 로 올리지 않음)
+     * 트랜잭션 안에서 호출해야 한다.
+     */
+    void streamSearch(MemberSearchCondition cond, int fetchSize, Consumer<MemberDto> action);
 }
@@ -1,69 +1,88 @@
 package study.datajpa.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.dto.ApproximateCountPage;
+import study.datajpa.dto.MemberCursor;
+import study.datajpa.dto.MemberCursorPage;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.dto.MemberSearchCondition;
-import study.datajpa.dto.QMemberDto;
-import study.datajpa.entity.Member;
+import study.datajpa.dto.UsernameMatchMode;
+import study.datajpa.repository.cache.MemberCountCache;
+import study.datajpa.repository.cache.MemberSearchCache;
+import study.datajpa.repository.index.MemberAgeHistogram;
+import study.datajpa.repository.index.MemberUsernameIndex;
+import study.datajpa.repository.shard.ShardedMemberRepository;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
-import static org.springframework.util.StringUtils.hasText;
 import static study.datajpa.entity.QMember.member;
-import static study.datajpa.entity.QTeam.team;
 
 @RequiredArgsConstructor
 public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
     private final EntityManager em;
-    private final JPAQueryFactory queryFactory;
+    private final MemberCountCache countCache;
+    private final MemberSearchCache searchCache;
+    private final ConcurrentCountExecutor countExecutor;
+    private final MemberSearchQueries searchQueries;
+    private final MemberUsernameIndex usernameIndex;
+    private final MemberAgeHistogram ageHistogram;
+    private final MemberAgeWriteBehind ageWriteBehind;
+    // sharding.enabled=true 일 때만 있다 - search, searchPage* 만 샤드로 보낸다 (save, searchByCursor, streamSearch 는 기본 데이터소스)
+    private final ObjectProvider<ShardedMemberRepository> shardedRepository;
 
     @Override
     public List<MemberDto> search(MemberSearchCondition cond) {
-        return queryFactory
-                .select(new QMemberDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(cond.getUsername()),
-                        teamnameEq(cond.getTeamname()),
-                        ageGoe(cond.getAgeGoe()),
-                        ageLoe(cond.getAgeLoe())
-                )
-                .fetch();
+        ShardedMemberRepository sharded = shardedRepository.getIfAvailable();
+        if (sharded != null) {
+            return sharded.search(cond);
+        }
+        flushPendingChanges();
+        return searchCache.get(cond, () -> {
+            Collection<Long> candidates = usernameIndex.candidates(cond);
+            if (candidates != null && candidates.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return searchQueries.content(em, cond, candidates).fetch();
+        });
+    }
+
+    @Override
+    public List<MemberDto> searchIncludingPending(MemberSearchCondition cond) {
+        List<MemberDto> result = new ArrayList<>();
+        for (MemberDto dto : search(cond)) {
+            long pending = ageWriteBehind.pendingAge(dto.getId());
+            // 검색 결과(캐시가 돌려준 복사본 포함)는 DB 에 반영된 나이 그대로 두고, 대기 중인 증감은 새 DTO 에만 더한다
+            result.add(pending == 0 ? dto
+                    : new MemberDto(dto.getId(), dto.getUsername(), (int) (dto.getAge() + pending), dto.getTeamId(), dto.getTeamname()));
+        }
+        return result;
     }
 
     @Override
     public Page<MemberDto> searchPageSimple(MemberSearchCondition cond, Pageable pageable) {
-        QueryResults<MemberDto> results = queryFactory
-                .select(new QMemberDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(cond.getUsername()),
-                        teamnameEq(cond.getTeamname()),
-                        ageGoe(cond.getAgeGoe()),
-                        ageLoe(cond.getAgeLoe())
-                )
+        ShardedMemberRepository sharded = shardedRepository.getIfAvailable();
+        if (sharded != null) {
+            return sharded.searchPage(cond, pageable);
+        }
+        QueryResults<MemberDto> results = searchQueries.content(em, cond)
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
@@ -112,47 +131,125 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
     @Override
     public Page<MemberDto> searchPageComplex(MemberSearchCondition cond, Pageable pageable) {
-        List<MemberDto> content = queryFactory
-                .select(new QMemberDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(cond.getUsername()),
-                        teamnameEq(cond.getTeamname()),
-                        ageGoe(cond.getAgeGoe()),
-                        ageLoe(cond.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
+        ShardedMemberRepository sharded = shardedRepository.getIfAvailable();
+        if (sharded != null) {
+            return sharded.searchPage(cond, pageable);
+        }
+        Collection<Long> candidates = null;
+        if (cond.normalized().getUsernameMatch() != UsernameMatchMode.EXACT) {
+            flushPendingChanges();
+            candidates = usernameIndex.candidates(cond);
+            if (candidates != null && candidates.isEmpty()) {
+                return new PageImpl<>(Collections.emptyList(), pageable, 0);
+            }
+        }
+        Collection<Long> memberIds = candidates;
+
+        // count 는 한 경로로만 구한다 - 히스토그램 -> count 캐시 -> (미스) 동시 count 또는 같은 스레드에서 SQL
+        // 나이, 팀 조건만 있으면 히스토그램. 캐시, 동시 count 를 거치지 않는다 (플러시해서 이 트랜잭션이 바꾼 게 있으면 건너뛴다)
+        flushPendingChanges();
+        OptionalLong histogramTotal = ageHistogram.count(cond);
+        if (histogramTotal.isPresent()) {
+            List<MemberDto> content = searchQueries.content(em, cond, memberIds)
+                    .offset(pageable.getOffset())
+                    .limit(pageable.getPageSize())
+                    .fetch();
+            return PageableExecutionUtils.getPage(content, pageable, histogramTotal::getAsLong);
+        }
+
+        // 읽기-쓰기 트랜잭션 안이면 같은 스레드에서 count 해야 자기 변경이 보인다
+        boolean concurrent = countExecutor.isEnabledForCaller();
+        // count 쿼리는 실제로 실행하는 스레드의 EntityManager 로 만든다
+        MemberCountCache.Lookup total = countCache.lookup(cond, () -> {
+            JPAQuery<Long> countQuery = searchQueries.count(em, cond, memberIds);
+            if (concurrent) {
+                countQuery.setHint("javax.persistence.query.timeout", countExecutor.getTimeoutMillis());
+            }
+            return countQuery.fetchOne();
+        });
+
+        // 동시 실행 모드 - count 를 먼저 다른 커넥션에서 시작해 두고 컨텐츠를 조회한다
+        Future<Long> concurrentTotal = concurrent ? countExecutor.submit(total) : null;
+
+        List<MemberDto> content;
+        try {
+            content = searchQueries.content(em, cond, memberIds)
+                    .offset(pageable.getOffset())
+                    .limit(pageable.getPageSize())
+                    .fetch();
+        } catch (RuntimeException e) {
+            if (concurrentTotal != null) {
+                concurrentTotal.cancel(true);
+            }
+            throw e;
+        }
+
+        Page<MemberDto> page;
+        if (concurrentTotal == null) {
+            page = PageableExecutionUtils.getPage(content, pageable, total);
+        } else {
+            Future<Long> pending = concurrentTotal;
+            page = PageableExecutionUtils.getPage(content, pageable, () -> countExecutor.await(pending));
+            if (!pending.isDone()) {
+                pending.cancel(true); // 마지막 페이지라 count 가 필요 없었던 경우
+            }
+        }
+
+        if (total.isApproximate()) {
+            return new ApproximateCountPage<>(page.getContent(), pageable, page.getTotalElements());
+        }
+        return page;
+    }
+
+    @Override
+    public MemberCursorPage searchByCursor(MemberSearchCondition cond, MemberCursor after, int size) {
+        // 다음 페이지 존재 여부 확인을 위해 한 건 더 조회
+        List<MemberDto> content = searchQueries.content(em, cond)
+                .where(afterCursor(after))
+                .orderBy(member.age.asc(), member.id.asc())
+                .limit(size + 1)
                 .fetch();
 
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(cond.getUsername()),
-                        teamnameEq(cond.getTeamname()),
-                        ageGoe(cond.getAgeGoe()),
-                        ageLoe(cond.getAgeLoe())
-                );
-
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content = content.subList(0, size);
+        }
+        return new MemberCursorPage(content, size, hasNext);
     }
 
-    private BooleanExpression usernameEq(String username) { return hasText(username) ? member.username.eq(username) : null;}
-    private BooleanExpression teamnameEq(String teamname) {
-        return hasText(teamname) ? team.name.eq(teamname) : null;
+    @Override
+    public void streamSearch(MemberSearchCondition cond, int fetchSize, Consumer<MemberDto> action) {
+        JPAQuery<MemberDto> query = searchQueries.content(em, cond)
+                .orderBy(member.id.asc())
+                .setHint("org.hibernate.fetchSize", fetchSize)
+                .setHint("org.hibernate.readOnly", true);
+
+        // 하이버네이트에서는 iterate() 가 ScrollableResults(FORWARD_ONLY) 로 동작한다.
+        long rows = 0;
+        try (CloseableIterator<MemberDto> iterator = query.iterate()) {
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+                if (++rows % fetchSize == 0) {
+                    em.clear(); // 1차 캐시가 커지지 않도록 fetchSize 마다 비운다
+                }
+            }
+        }
     }
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
+
+    /**
+     * 캐시는 쿼리 전 자동 플러시를 거치지 않으므로 아직 반영되지 않은 변경을 먼저 플러시해서 무효화 이벤트를 발생시킨다.
+     */
+    private void flushPendingChanges() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            em.flush();
+        }
     }
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+
+    private BooleanExpression afterCursor(MemberCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        return member.age.gt(cursor.getAge())
+                .or(member.age.eq(cursor.getAge()).and(member.id.gt(cursor.getId())));
     }
 }
@@ -0,0 +1,114 @@
+package study.datajpa.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.dto.QMemberDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collection;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.datajpa.entity.QMember.member;
+import static study.datajpa.entity.QTeam.team;
+
+/**
+ * MemberSearchCondition 검색 쿼리. 검색 조건(where)은 여기 QueryDSL 식으로만 만든다.
+ * 값은 파라미터로 바인딩되므로 어떤 조건이 들어왔는지(shape)가 같으면 JPQL 문자열도 같고,
+ * 하이버네이트 쿼리 플랜 캐시에서 파싱 결과를 재사용한다.
+ */
+@Component
+public class MemberSearchQueries {
+
+    public MemberSearchQueries(MeterRegistry registry, EntityManagerFactory emf) {
+        // hibernate.generate_statistics 가 켜져 있을 때만 값이 쌓이므로 꺼져 있으면 등록하지 않는다 (JPA_STATISTICS=true)
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        if (statistics.isStatisticsEnabled()) {
+            FunctionCounter.builder("jpa.query.plan.cache", statistics, Statistics::getQueryPlanCacheHitCount)
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("jpa.query.plan.cache", statistics, Statistics::getQueryPlanCacheMissCount)
+                    .tag("result", "miss").register(registry);
+        }
+    }
+
+    public JPAQuery<MemberDto> content(EntityManager em, MemberSearchCondition cond) {
+        return content(em, cond, null);
+    }
+
+    /**
+     * memberIds 가 있으면 id in (...) 조건을 추가한다. (username 인덱스로 찾은 후보)
+     */
+    public JPAQuery<MemberDto> content(EntityManager em, MemberSearchCondition cond, Collection<Long> memberIds) {
+        return new JPAQuery<>(em)
+                .select(new QMemberDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(where(cond, memberIds));
+    }
+
+    /**
+     * member id 순으로 정렬한 content - 샤드별 결과를 합쳐서 다시 페이징할 때 쓴다.
+     */
+    public JPAQuery<MemberDto> contentOrderById(EntityManager em, MemberSearchCondition cond) {
+        return content(em, cond).orderBy(member.id.asc());
+    }
+
+    public JPAQuery<Long> count(EntityManager em, MemberSearchCondition cond) {
+        return count(em, cond, null);
+    }
+
+    public JPAQuery<Long> count(EntityManager em, MemberSearchCondition cond, Collection<Long> memberIds) {
+        return new JPAQuery<>(em)
+                .select(member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(where(cond, memberIds));
+    }
+
+    private static Predicate[] where(MemberSearchCondition cond, Collection<Long> memberIds) {
+        return new Predicate[]{
+                usernameEq(cond),
+                memberIds != null ? member.id.in(memberIds) : null,
+                teamnameEq(cond.getTeamname()),
+                ageGoe(cond.getAgeGoe()),
+                ageLoe(cond.getAgeLoe())
+        };
+    }
+
+    private static BooleanExpression usernameEq(MemberSearchCondition cond) {
+        String username = cond.getUsername();
+        if (!hasText(username)) {
+            return null;
+        }
+        switch (cond.normalized().getUsernameMatch()) {
+            case PREFIX:
+                return member.username.startsWith(username);
+            case INFIX:
+                return member.username.contains(username);
+            default:
+                return member.username.eq(username);
+        }
+    }
+    private static BooleanExpression teamnameEq(String teamname) {
+        return hasText(teamname) ? team.name.eq(teamname) : null;
+    }
+    private static BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+    private static BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+}
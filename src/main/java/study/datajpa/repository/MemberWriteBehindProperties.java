@@ -0,0 +1,22 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "member.write-behind")
+public class MemberWriteBehindProperties {
+
+    // false 면 addAge 가 바로 update 한다
+    private boolean enabled = true;
+    private Duration flushInterval = Duration.ofSeconds(1);
+    // 쌓인 회원 수가 이만큼 되면 주기를 기다리지 않고 flush
+    private int maxPendingMembers = 10_000;
+    // update 배치 크기
+    private int batchSize = 1000;
+}
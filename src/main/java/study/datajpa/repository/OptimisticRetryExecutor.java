@@ -0,0 +1,84 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 읽고-바꾸고-쓰기를 새 트랜잭션에서 실행하고, 동시 수정 충돌(@Version 불일치, 락 획득 실패)이면 처음부터 다시 실행한다.
+ * 재시도 사이에는 지수 증가 + 무작위(full jitter) 로 쉬어서 충돌한 스레드끼리 다시 부딪히지 않게 한다.
+ * 매 시도가 새로 조회해야 하므로 바깥 트랜잭션 없이 호출한다. (바깥 영속성 컨텍스트의 엔티티는 갱신되지 않는다)
+ */
+@Slf4j
+@Component
+public class OptimisticRetryExecutor {
+
+    private final TransactionTemplate attemptTx;
+    private final OptimisticRetryProperties properties;
+    private final MeterRegistry registry;
+
+    public OptimisticRetryExecutor(PlatformTransactionManager transactionManager,
+                                   OptimisticRetryProperties properties,
+                                   MeterRegistry registry) {
+        this.attemptTx = new TransactionTemplate(transactionManager);
+        this.attemptTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    public void execute(String operation, Runnable work) {
+        execute(operation, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * @param operation 메트릭 태그 (예: member.changeAge)
+     * @throws ConcurrencyFailureException max-attempts 번 모두 충돌한 경우 마지막 예외
+     */
+    public <T> T execute(String operation, Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = attemptTx.execute(status -> work.get());
+                if (attempt > 1) {
+                    registry.counter("member.lock.retry", "operation", operation, "result", "recovered").increment();
+                }
+                return result;
+            } catch (ConcurrencyFailureException e) {
+                String type = e instanceof OptimisticLockingFailureException ? "optimistic" : "pessimistic";
+                registry.counter("member.lock.conflict", "type", type, "operation", operation).increment();
+                if (attempt >= properties.getMaxAttempts()) {
+                    registry.counter("member.lock.retry", "operation", operation, "result", "exhausted").increment();
+                    log.warn("{} gave up after {} attempts: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+                registry.counter("member.lock.retry", "operation", operation, "result", "retried").increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long initial = properties.getInitialBackoff().toMillis();
+        long cap = Math.min(properties.getMaxBackoff().toMillis(), initial << Math.min(attempt - 1, 20));
+        if (cap <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while backing off", e);
+        }
+    }
+}
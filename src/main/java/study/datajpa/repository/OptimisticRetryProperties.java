@@ -0,0 +1,20 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "member.retry")
+public class OptimisticRetryProperties {
+
+    // 첫 시도 포함
+    private int maxAttempts = 5;
+    // n 번째 재시도 전 0 ~ min(max-backoff, initial-backoff * 2^(n-1)) 사이에서 무작위로 쉰다
+    private Duration initialBackoff = Duration.ofMillis(10);
+    private Duration maxBackoff = Duration.ofMillis(200);
+}
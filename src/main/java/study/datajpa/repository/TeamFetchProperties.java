@@ -0,0 +1,14 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "team.fetch")
+public class TeamFetchProperties {
+
+    private int memberBatchSize = 100;
+}
@@ -0,0 +1,17 @@
+package study.datajpa.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import study.datajpa.dto.TeamDto;
+import study.datajpa.monitoring.StatementBudget;
+
+public interface TeamRepositoryCustom {
+
+    /**
+     * 팀 단위로 페이징하고 회원은 팀 아이디 IN 절로 team.fetch.member-batch-size 개 팀씩 모아서 조회한다.
+     * 쿼리 수 = 팀 1 + count 1 + ceil(팀 수 / batch size)
+     * 정렬은 팀의 id, name 만 된다. (그 외 속성은 InvalidDataAccessApiUsageException, 팀 안의 회원은 항상 id 순)
+     */
+    @StatementBudget(3)
+    Page<TeamDto> findTeamsWithMembers(Pageable pageable);
+}
@@ -0,0 +1,99 @@
+package study.datajpa.repository;
+
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.QMemberDto;
+import study.datajpa.dto.QTeamDto;
+import study.datajpa.dto.TeamDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static study.datajpa.entity.QMember.member;
+import static study.datajpa.entity.QTeam.team;
+
+@RequiredArgsConstructor
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+
+    private final JPAQueryFactory queryFactory;
+    private final TeamFetchProperties properties;
+
+    @Override
+    public Page<TeamDto> findTeamsWithMembers(Pageable pageable) {
+        // 조인한 row 가 아니라 팀에 페이징을 건다
+        List<TeamDto> teams = queryFactory
+                .select(new QTeamDto(team.id, team.name))
+                .from(team)
+                .orderBy(teamOrder(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        Map<Long, TeamDto> teamById = teams.stream()
+                .collect(Collectors.toMap(TeamDto::getId, Function.identity()));
+        List<Long> teamIds = teams.stream().map(TeamDto::getId).collect(Collectors.toList());
+
+        int batchSize = properties.getMemberBatchSize();
+        for (int from = 0; from < teamIds.size(); from += batchSize) {
+            List<Long> batch = teamIds.subList(from, Math.min(from + batchSize, teamIds.size()));
+            List<MemberDto> members = queryFactory
+                    .select(new QMemberDto(
+                            member.id,
+                            member.username,
+                            member.age,
+                            team.id,
+                            team.name))
+                    .from(member)
+                    .join(member.team, team)
+                    .where(team.id.in(batch))
+                    .orderBy(member.id.asc())
+                    .fetch();
+            for (MemberDto dto : members) {
+                teamById.get(dto.getTeamId()).getMembers().add(dto);
+            }
+        }
+
+        JPAQuery<Long> countQuery = queryFactory
+                .select(team.count())
+                .from(team);
+
+        return PageableExecutionUtils.getPage(teams, pageable, countQuery::fetchOne);
+    }
+
+    /**
+     * 팀 정렬은 id, name 만 받는다. 같은 값끼리 페이지가 섞이지 않도록 마지막에 id 로 한번 더 정렬한다.
+     */
+    private OrderSpecifier<?>[] teamOrder(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        boolean byId = false;
+        for (Sort.Order order : sort) {
+            Order direction = order.isAscending() ? Order.ASC : Order.DESC;
+            switch (order.getProperty()) {
+                case "id":
+                    orders.add(new OrderSpecifier<>(direction, team.id));
+                    byId = true;
+                    break;
+                case "name":
+                    orders.add(new OrderSpecifier<>(direction, team.name));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported team sort property: " + order.getProperty());
+            }
+        }
+        if (!byId) {
+            orders.add(team.id.asc());
+        }
+        return orders.toArray(new OrderSpecifier<?>[0]);
+    }
+}
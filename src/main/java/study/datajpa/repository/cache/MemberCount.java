@@ -0,0 +1,23 @@
+package study.datajpa.repository.cache;
+
+import lombok.Getter;
+
+@Getter
+public class MemberCount {
+
+    private final long total;
+    private final boolean approximate;
+
+    private MemberCount(long total, boolean approximate) {
+        this.total = total;
+        this.approximate = approximate;
+    }
+
+    public static MemberCount exact(long total) {
+        return new MemberCount(total, false);
+    }
+
+    public static MemberCount approximate(long total) {
+        return new MemberCount(total, true);
+    }
+}
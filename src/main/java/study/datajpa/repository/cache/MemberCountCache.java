@@ -0,0 +1,332 @@
+package study.datajpa.repository.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import org.hibernate.Hibernate;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.datajpa.config.ReplicaRoutingDataSource;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.entity.EntityChangedEvent;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberAgesChangedEvent;
+import study.datajpa.entity.MemberBulkLoadedEvent;
+import study.datajpa.entity.MemberBulkUpdatedEvent;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.index.TeamNameDirectory;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * searchPageComplex 의 count 쿼리 결과 캐시. 정규화된 MemberSearchCondition 이 키다.
+ * 무효화는 항목을 훑지 않고 세대(generation) 번호만 올린다. 항목은 읽을 때 저장 당시 세대와 비교한다.
+ * - 회원 insert/delete: 그 회원이 맞을 수 있는 (팀 이름, username 조건) 묶음의 세대
+ *   (팀 조건 없음/그 팀) x (username 조건 없음, INFIX/그 username 과 같음/그 username 의 접두어)
+ * - write-behind 나이 변경: 그 회원 팀(과 팀 조건 없음)의 나이 세대 - 나이 조건이 있는 항목만 본다
+ * - 회원 update, 팀 이름 변경/삭제, 벌크 연산, 팀 이름을 모르는 회원: 전체 세대
+ * - 팀 insert: 없음 (회원이 없는 팀은 어떤 count 도 바꾸지 않는다. 회원을 넣으면 회원 insert 로 무효화된다)
+ * 무효화된 값은 근사 모드에서만 사용된다.
+ * Member/Team 을 바꾼 트랜잭션 안에서는 커밋되지 않은 행이 count 에 들어가므로 캐시를 읽지도, 저장하지도 않는다.
+ * 나이, 팀 이름 조건만 있는 count 는 MemberAgeHistogram 이 먼저 답하므로, 이 캐시를 거치는 건 히스토그램을 쓸 수 없는 count 뿐이다.
+ */
+@Component
+public class MemberCountCache {
+
+    private static final String ANY = "*";
+
+    private final MemberCountCacheProperties properties;
+    private final TeamNameDirectory teams;
+    private final Map<MemberSearchCondition, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    // 묶음별 세대 - 캐시를 찾아본 묶음만 있다. 회원 변경은 있는 묶음만 올리므로 username 접두어마다 늘어나지 않는다
+    private final Map<String, AtomicLong> memberGenerations = new ConcurrentHashMap<>(); // 팀 이름 + username 조건
+    private final Map<String, AtomicLong> ageGenerations = new ConcurrentHashMap<>(); // 팀 이름
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter approximateHits;
+    private final DistributionSummary staleness;
+
+    public MemberCountCache(MemberCountCacheProperties properties, TeamNameDirectory teams, MeterRegistry registry) {
+        this.properties = properties;
+        this.teams = teams;
+        this.hits = registry.counter("member.count.cache", "result", "hit");
+        this.misses = registry.counter("member.count.cache", "result", "miss");
+        this.approximateHits = registry.counter("member.count.cache", "result", "approximate");
+        this.staleness = DistributionSummary.builder("member.count.cache.staleness")
+                .description("age of the cached count when it was served")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("member.count.cache.size", entries, Map::size).register(registry);
+    }
+
+    /**
+     * PageableExecutionUtils 에 넘길 count supplier - 실제로 필요할 때만 캐시/쿼리를 탄다.
+     */
+    public Lookup lookup(MemberSearchCondition cond, LongSupplier countQuery) {
+        return new Lookup(cond, countQuery, TransactionWrites.hasWritten());
+    }
+
+    public MemberCount count(MemberSearchCondition cond, LongSupplier countQuery) {
+        return count(cond, countQuery, TransactionWrites.hasWritten());
+    }
+
+    /**
+     * @param callerHasWritten 호출한 트랜잭션이 Member/Team 을 바꿨는지 (count 는 다른 스레드에서 실행될 수 있다)
+     */
+    private MemberCount count(MemberSearchCondition cond, LongSupplier countQuery, boolean callerHasWritten) {
+        if (!properties.isEnabled() || callerHasWritten) {
+            return MemberCount.exact(countQuery.getAsLong());
+        }
+
+        MemberSearchCondition key = cond.normalized();
+        long now = System.currentTimeMillis();
+        Generations current = generationsOf(key);
+        Entry entry = entries.get(key);
+
+        if (entry != null) {
+            long age = now - entry.loadedAt;
+            if (entry.generations.equals(current) && age <= properties.getTtl().toMillis()) {
+                hits.increment();
+                staleness.record(age);
+                return MemberCount.exact(entry.count);
+            }
+            MemberCountCacheProperties.Approximate approximate = properties.getApproximate();
+            if (approximate.isEnabled()
+                    && entry.count >= approximate.getThreshold()
+                    && age <= approximate.getMaxStaleness().toMillis()) {
+                approximateHits.increment();
+                staleness.record(age);
+                return MemberCount.approximate(entry.count);
+            }
+        }
+
+        misses.increment();
+        long count = countQuery.getAsLong();
+        // 조회 도중 변경이 있었다면 조회 전 세대로 저장되므로 다음 요청에서 무효 처리된다.
+        // 레플리카에서 센 값은 복제 지연만큼 낡았을 수 있으므로 저장하지 않는다. (count 를 실행한 스레드의 트랜잭션 기준)
+        if (!ReplicaRoutingDataSource.isReplicaRead()) {
+            store(key, new Entry(count, now, current));
+        }
+        return MemberCount.exact(count);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isMember()) {
+            if (event.getType() == EntityChangedEvent.Type.UPDATE) {
+                invalidateAll(); // 바뀌기 전 값을 모른다
+            } else {
+                invalidateMatching((Member) event.getEntity());
+            }
+        } else if (event.isTeam() && event.getType() != EntityChangedEvent.Type.PERSIST) {
+            invalidateAll();
+        }
+    }
+
+    @EventListener
+    public void onBulkUpdated(MemberBulkUpdatedEvent event) {
+        invalidateAll();
+    }
+
+    /**
+     * write-behind 의 나이 변경 - 회원 수는 그대로이므로 나이 조건이 있는 항목만 바뀔 수 있다.
+     */
+    @EventListener
+    public void onAgesChanged(MemberAgesChangedEvent event) {
+        for (MemberAgesChangedEvent.Change change : event.getChanges().values()) {
+            String teamname = change.getTeamId() == TeamNameDirectory.NO_TEAM ? null : teams.nameOf(change.getTeamId());
+            if (change.getTeamId() != TeamNameDirectory.NO_TEAM && teamname == null) {
+                invalidateAll();
+                return;
+            }
+            bump(ageGenerations, ANY);
+            if (teamname != null) {
+                bump(ageGenerations, teamname);
+            }
+        }
+    }
+
+    /**
+     * 대량 적재는 행마다 이벤트를 발행하지 않으므로 끝난 뒤 전체를 비운다.
+     */
+    @EventListener
+    public void onBulkLoaded(MemberBulkLoadedEvent event) {
+        invalidateAll();
+    }
+
+    /**
+     * 변경이 있었던 트랜잭션 안에서 커밋되지 않은 데이터로 캐시가 채워졌을 수 있으므로
+     * 트랜잭션 종료(커밋/롤백) 후에 한번 더 무효화한다.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterEntityChangeCompleted(EntityChangedEvent event) {
+        onEntityChanged(event);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterBulkUpdateCompleted(MemberBulkUpdatedEvent event) {
+        invalidateAll();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterAgesChangeCompleted(MemberAgesChangedEvent event) {
+        onAgesChanged(event);
+    }
+
+    /**
+     * 회원이 맞을 수 있는 묶음의 세대만 올린다. 근사 모드에서 쓸 수 있도록 항목은 지우지 않는다.
+     */
+    private void invalidateMatching(Member member) {
+        Team team = member.getTeam();
+        String teamname = null;
+        if (team != null) {
+            // 플러시 중에 프록시를 초기화하지 않는다 - 커밋된 팀이면 디렉터리에서 이름을 찾는다
+            teamname = Hibernate.isInitialized(team) ? team.getName() : teams.nameOf(TeamNameDirectory.teamIdOf(member));
+            if (teamname == null) {
+                invalidateAll();
+                return;
+            }
+        }
+        bumpUsernameGroups(ANY, member.getUsername());
+        if (teamname != null) {
+            bumpUsernameGroups(teamname, member.getUsername());
+        }
+    }
+
+    private void bumpUsernameGroups(String teamname, String username) {
+        bump(memberGenerations, memberGroup(teamname, ANY));
+        if (username == null) {
+            return;
+        }
+        bump(memberGenerations, memberGroup(teamname, "=" + username));
+        for (int length = 1; length <= username.length(); length++) {
+            bump(memberGenerations, memberGroup(teamname, "^" + username.substring(0, length)));
+        }
+    }
+
+    private static void bump(Map<String, AtomicLong> generations, String group) {
+        AtomicLong counter = generations.get(group);
+        if (counter != null) {
+            counter.incrementAndGet();
+        }
+    }
+
+    /**
+     * 조회 전에 묶음을 만들어 두므로 조회 도중의 변경도 세대에 남는다.
+     */
+    private Generations generationsOf(MemberSearchCondition key) {
+        if (memberGenerations.size() + ageGenerations.size() > properties.getMaxEntries() * 4) {
+            // 저장되지 않은 조건(레플리카 조회 등)의 묶음이 쌓이지 않도록 비운다 - 전체 세대를 먼저 올려서 기존 항목은 무효가 된다
+            invalidateAll();
+            memberGenerations.clear();
+            ageGenerations.clear();
+        }
+        long global = generation.get();
+        String teamname = key.getTeamname() != null ? key.getTeamname() : ANY;
+        long members = memberGenerations.computeIfAbsent(memberGroup(teamname, usernameGroup(key)), group -> new AtomicLong()).get();
+        boolean ageBounded = key.getAgeGoe() != null || key.getAgeLoe() != null;
+        long ages = ageBounded ? ageGenerations.computeIfAbsent(teamname, group -> new AtomicLong()).get() : 0;
+        return new Generations(global, members, ages);
+    }
+
+    private static String usernameGroup(MemberSearchCondition key) {
+        if (key.getUsername() == null) {
+            return ANY;
+        }
+        switch (key.getUsernameMatch()) {
+            case EXACT:
+                return "=" + key.getUsername();
+            case PREFIX:
+                return "^" + key.getUsername();
+            default:
+                return ANY; // INFIX - 부분 문자열마다 묶음을 만들지 않는다
+        }
+    }
+
+    private static String memberGroup(String teamname, String usernameGroup) {
+        return teamname + '\u0000' + usernameGroup;
+    }
+
+    private void store(MemberSearchCondition key, Entry entry) {
+        if (entries.size() >= properties.getMaxEntries() && !entries.containsKey(key)) {
+            entries.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().loadedAt))
+                    .ifPresent(eldest -> entries.remove(eldest.getKey()));
+        }
+        entries.put(key, entry);
+    }
+
+    private static class Entry {
+        private final long count;
+        private final long loadedAt;
+        private final Generations generations;
+
+        private Entry(long count, long loadedAt, Generations generations) {
+            this.count = count;
+            this.loadedAt = loadedAt;
+            this.generations = generations;
+        }
+    }
+
+    /**
+     * 항목을 저장할 때의 (전체, 회원 묶음, 나이 묶음) 세대. 하나라도 달라졌으면 무효다.
+     */
+    @EqualsAndHashCode
+    private static class Generations {
+        private final long global;
+        private final long members;
+        private final long ages;
+
+        private Generations(long global, long members, long ages) {
+            this.global = global;
+            this.members = members;
+            this.ages = ages;
+        }
+    }
+
+    public class Lookup implements LongSupplier {
+
+        private final MemberSearchCondition cond;
+        private final LongSupplier countQuery;
+        private final boolean callerHasWritten;
+        private volatile MemberCount result;
+
+        private Lookup(MemberSearchCondition cond, LongSupplier countQuery, boolean callerHasWritten) {
+            this.cond = cond;
+            this.countQuery = countQuery;
+            this.callerHasWritten = callerHasWritten;
+        }
+
+        /**
+         * count 는 동시 count 스레드에서, isApproximate 는 요청 스레드에서 부를 수 있으므로 result 는 volatile 이다.
+         */
+        @Override
+        public long getAsLong() {
+            MemberCount current = result;
+            if (current == null) {
+                current = count(cond, countQuery, callerHasWritten);
+                result = current;
+            }
+            return current.getTotal();
+        }
+
+        public boolean isApproximate() {
+            MemberCount current = result;
+            return current != null && current.isApproximate();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package study.datajpa.repository.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "member.count-cache")
+public class MemberCountCacheProperties {
+
+    private boolean enabled = true;
+    private Duration ttl = Duration.ofSeconds(60);
+    private int maxEntries = 1000;
+    private final Approximate approximate = new Approximate();
+
+    /**
+     * 근사 모드 - 무효화된 값이라도 threshold 이상이고 maxStaleness 이내면
+     * count 쿼리 없이 근사값으로 응답한다.
+     */
+    @Getter @Setter
+    public static class Approximate {
+        private boolean enabled = false;
+        private long threshold = 100_000;
+        private Duration maxStaleness = Duration.ofMinutes(10);
+    }
+}
@@ -0,0 +1,259 @@
+package study.datajpa.repository.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.Hibernate;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.datajpa.config.ReplicaRoutingDataSource;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.entity.EntityChangedEvent;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberAgesChangedEvent;
+import study.datajpa.entity.MemberBulkLoadedEvent;
+import study.datajpa.entity.MemberBulkUpdatedEvent;
+import study.datajpa.entity.Team;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * MemberRepositoryCustom.search 결과 캐시. 정규화된 MemberSearchCondition 이 키다.
+ * 크기 제한(LRU) + TTL 로 만료되고, 엔티티 리스너 이벤트로 영향받는 항목만 무효화한다.
+ * Member/Team 을 바꾼 트랜잭션 안의 검색은 캐시를 거치지 않는다. (커밋 전 행이 다른 트랜잭션에 보이면 안 된다)
+ * 레플리카에서 읽은 결과는 복제 지연만큼 낡았을 수 있으므로 돌려주기만 하고 저장하지 않는다.
+ * MemberDto 는 변경 가능하므로 저장할 때와 돌려줄 때 모두 복사한다.
+ */
+@Component
+public class MemberSearchCache {
+
+    private final MemberSearchCacheProperties properties;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LinkedHashMap<MemberSearchCondition, Entry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidatedEvictions;
+    private final Timer loadTimer;
+
+    public MemberSearchCache(MemberSearchCacheProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.hits = registry.counter("member.search.cache", "result", "hit");
+        this.misses = registry.counter("member.search.cache", "result", "miss");
+        this.sizeEvictions = registry.counter("member.search.cache.evictions", "cause", "size");
+        this.expiredEvictions = registry.counter("member.search.cache.evictions", "cause", "expired");
+        this.invalidatedEvictions = registry.counter("member.search.cache.evictions", "cause", "invalidated");
+        this.loadTimer = Timer.builder("member.search.cache.load")
+                .description("time spent running the search query on a cache miss")
+                .register(registry);
+        this.entries = new LinkedHashMap<MemberSearchCondition, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemberSearchCondition, Entry> eldest) {
+                if (size() > properties.getMaxEntries()) {
+                    sizeEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Gauge.builder("member.search.cache.size", this, MemberSearchCache::size).register(registry);
+        Gauge.builder("member.search.cache.hit.ratio", this, MemberSearchCache::hitRatio).register(registry);
+    }
+
+    public List<MemberDto> get(MemberSearchCondition cond, Supplier<List<MemberDto>> loader) {
+        if (!properties.isEnabled() || TransactionWrites.hasWritten()) {
+            return loader.get();
+        }
+
+        MemberSearchCondition key = cond.normalized();
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.loadedAt <= properties.getTtl().toMillis()) {
+                    hits.increment();
+                    return copyOf(entry.result);
+                }
+                entries.remove(key);
+                expiredEvictions.increment();
+            }
+        }
+
+        misses.increment();
+        long version = invalidations.get();
+        List<MemberDto> result = loadTimer.record(loader);
+        synchronized (entries) {
+            // 조회 도중 무효화가 있었거나 레플리카에서 읽었다면 이미 낡은 결과일 수 있으므로 저장하지 않는다
+            if (version == invalidations.get() && !ReplicaRoutingDataSource.isReplicaRead()) {
+                entries.put(key, new Entry(copyOf(result), now));
+            }
+        }
+        return result;
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            invalidatedEvictions.increment(entries.size());
+            entries.clear();
+        }
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isMember()) {
+            Member member = (Member) event.getEntity();
+            invalidateIf((key, entry) -> entry.memberIds.contains(member.getId()) || mayMatch(key, member));
+        } else if (event.isTeam()) {
+            Team team = (Team) event.getEntity();
+            invalidateIf((key, entry) -> entry.teamIds.contains(team.getId())
+                    || Objects.equals(key.getTeamname(), team.getName()));
+        }
+    }
+
+    @EventListener
+    public void onBulkUpdated(MemberBulkUpdatedEvent event) {
+        Integer ageGoe = event.getAgeGoe();
+        // ageGoe 이상인 회원만 바뀌므로 ageLoe 가 그보다 작은 검색은 영향이 없다
+        invalidateIf((key, entry) -> ageGoe == null || key.getAgeLoe() == null || key.getAgeLoe() >= ageGoe);
+    }
+
+    /**
+     * write-behind 의 나이 변경 - 그 회원이 들어 있거나, 바뀐 나이로 새로 걸릴 수 있는 검색만 지운다.
+     */
+    @EventListener
+    public void onAgesChanged(MemberAgesChangedEvent event) {
+        Map<Long, MemberAgesChangedEvent.Change> changes = event.getChanges();
+        invalidateIf((key, entry) -> changes.keySet().stream().anyMatch(entry.memberIds::contains)
+                || changes.values().stream().anyMatch(change -> key.ageMatches(change.getAfter())));
+    }
+
+    /**
+     * 대량 적재는 행마다 이벤트를 발행하지 않으므로 끝난 뒤 전체를 비운다.
+     */
+    @EventListener
+    public void onBulkLoaded(MemberBulkLoadedEvent event) {
+        invalidateAll();
+    }
+
+    /**
+     * 플러시 ~ 커밋 사이에 다른 트랜잭션이 이전 데이터로 캐시를 채웠을 수 있으므로 커밋 후 한번 더 무효화한다.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void afterEntityChangeCommitted(EntityChangedEvent event) {
+        onEntityChanged(event);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void afterBulkUpdateCommitted(MemberBulkUpdatedEvent event) {
+        onBulkUpdated(event);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void afterAgesChangeCommitted(MemberAgesChangedEvent event) {
+        onAgesChanged(event);
+    }
+
+    /**
+     * 롤백되면 변경 전 상태를 알 수 없으므로 전체를 비운다.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void afterEntityChangeRolledBack(EntityChangedEvent event) {
+        if (event.isMember() || event.isTeam()) {
+            invalidateAll();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void afterBulkUpdateRolledBack(MemberBulkUpdatedEvent event) {
+        invalidateAll();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void afterAgesChangeRolledBack(MemberAgesChangedEvent event) {
+        invalidateAll();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private void invalidateIf(EntryPredicate predicate) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.entrySet().removeIf(e -> {
+                boolean remove = predicate.test(e.getKey(), e.getValue());
+                if (remove) {
+                    invalidatedEvictions.increment();
+                }
+                return remove;
+            });
+        }
+    }
+
+    /**
+     * 플러시 중에 호출되므로 지연 로딩을 일으키지 않는다 - 팀이 프록시 상태면 팀 이름 조건은 만족한다고 본다.
+     */
+    private boolean mayMatch(MemberSearchCondition key, Member member) {
+        Team team = member.getTeam();
+        Predicate<String> teamnameMatches = name -> team != null
+                && (!Hibernate.isInitialized(team) || name.equals(team.getName()));
+        return key.usernameMatches(member.getUsername())
+                && (key.getTeamname() == null || teamnameMatches.test(key.getTeamname()))
+                && key.ageMatches(member.getAge());
+    }
+
+    private static List<MemberDto> copyOf(List<MemberDto> result) {
+        List<MemberDto> copy = new ArrayList<>(result.size());
+        for (MemberDto dto : result) {
+            copy.add(new MemberDto(dto.getId(), dto.getUsername(), dto.getAge(), dto.getTeamId(), dto.getTeamname()));
+        }
+        return Collections.unmodifiableList(copy);
+    }
+
+    @FunctionalInterface
+    private interface EntryPredicate {
+        boolean test(MemberSearchCondition key, Entry entry);
+    }
+
+    private static class Entry {
+        private final List<MemberDto> result;
+        private final long loadedAt;
+        private final Set<Long> memberIds = new HashSet<>();
+        private final Set<Long> teamIds = new HashSet<>();
+
+        private Entry(List<MemberDto> result, long loadedAt) {
+            this.result = result;
+            this.loadedAt = loadedAt;
+            for (MemberDto dto : result) {
+                memberIds.add(dto.getId());
+                if (dto.getTeamId() != null) {
+                    teamIds.add(dto.getTeamId());
+                }
+            }
+        }
+    }
+}
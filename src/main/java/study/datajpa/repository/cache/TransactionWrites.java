@@ -0,0 +1,55 @@
+package study.datajpa.repository.cache;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.entity.EntityChangedEvent;
+import study.datajpa.entity.MemberAgesChangedEvent;
+import study.datajpa.entity.MemberBulkUpdatedEvent;
+
+/**
+ * 현재 트랜잭션이 Member/Team 을 바꿨는지(플러시, 벌크 update, write-behind 나이 변경) 기록한다.
+ * 바꾼 트랜잭션 안에서 읽은 값은 아직 커밋되지 않은 행을 포함하므로 공유 캐시에서 읽지도, 저장하지도 않는다.
+ */
+@Component
+public class TransactionWrites {
+
+    private static final Object KEY = TransactionWrites.class;
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isMember() || event.isTeam()) {
+            mark();
+        }
+    }
+
+    @EventListener
+    public void onBulkUpdated(MemberBulkUpdatedEvent event) {
+        mark();
+    }
+
+    @EventListener
+    public void onAgesChanged(MemberAgesChangedEvent event) {
+        mark();
+    }
+
+    public static boolean hasWritten() {
+        return TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.hasResource(KEY);
+    }
+
+    private static void mark() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(KEY)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(KEY, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(KEY);
+            }
+        });
+    }
+}
@@ -0,0 +1,273 @@
+package study.datajpa.repository.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.entity.EntityChangedEvent;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberAgesChangedEvent;
+import study.datajpa.entity.MemberBulkLoadedEvent;
+import study.datajpa.entity.MemberBulkUpdatedEvent;
+import study.datajpa.repository.cache.TransactionWrites;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 팀별 나이 히스토그램 (team id -> age -> 회원 수).
+ * 나이 범위, 팀 이름 조건만 있는 count 를 DB 대신 나이 버킷 합으로 계산한다.
+ * 커밋된 회원 변경만 반영하므로 다른 트랜잭션의 커밋 전 행은 세지 않는다. 벌크 연산은 트랜잭션이 끝난 뒤 바뀐 나이대를 다시 읽고,
+ * write-behind 의 나이 변경은 바뀐 회원만 옮긴다.
+ *
+ * count 캐시(MemberCountCache), 동시 count(ConcurrentCountExecutor)보다 먼저 쓰인다. 버킷 합이 SQL count 보다 싸므로
+ * 히스토그램으로 답할 수 있는 조건은 두 경로를 거치지 않는다. (MemberRepositoryImpl.searchPageComplex 참고)
+ */
+@Slf4j
+@Component
+public class MemberAgeHistogram {
+
+    private final MemberAgeHistogramProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TeamNameDirectory teams;
+    private final Counter hits;
+    private final Counter fallbacks;
+
+    private final Map<Long, NavigableMap<Integer, LongAdder>> byTeam = new ConcurrentHashMap<>();
+    private final Map<Long, Placement> placements = new ConcurrentHashMap<>(); // member id -> (team id, age)
+    private final Object writeLock = new Object();
+    private final AtomicInteger pendingBulkUpdates = new AtomicInteger();
+    private final Queue<Runnable> committedDuringBuild = new ConcurrentLinkedQueue<>();
+    private volatile boolean ready;
+
+    public MemberAgeHistogram(MemberAgeHistogramProperties properties, JdbcTemplate jdbcTemplate,
+                              TeamNameDirectory teams, MeterRegistry registry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.teams = teams;
+        this.hits = registry.counter("member.age.histogram", "result", "hit");
+        this.fallbacks = registry.counter("member.age.histogram", "result", "fallback");
+    }
+
+    @EventListener({ApplicationReadyEvent.class, MemberBulkLoadedEvent.class})
+    public void build() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        synchronized (writeLock) {
+            ready = false;
+            byTeam.clear();
+            placements.clear();
+            jdbcTemplate.query("select member_id, team_id, age from member",
+                    rs -> { place(rs.getLong(1), rs.getLong(2), rs.getInt(3)); });
+            ready = true;
+            // 읽는 도중 커밋된 변경은 select 에 들어갔는지 알 수 없으므로 다시 반영한다 (같은 변경을 두번 반영해도 결과는 같다)
+            replayCommittedDuringBuild();
+        }
+        log.info("member age histogram built: {} members, {} teams in {} ms",
+                placements.size(), byTeam.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * username 조건이 있거나 히스토그램을 쓸 수 없으면 empty - SQL 로 count 한다.
+     */
+    public OptionalLong count(MemberSearchCondition cond) {
+        MemberSearchCondition normalized = cond.normalized();
+        if (!isAvailable() || normalized.getUsername() != null) {
+            fallbacks.increment();
+            return OptionalLong.empty();
+        }
+        int ageGoe = normalized.getAgeGoe() != null ? normalized.getAgeGoe() : Integer.MIN_VALUE;
+        int ageLoe = normalized.getAgeLoe() != null ? normalized.getAgeLoe() : Integer.MAX_VALUE;
+        if (ageGoe > ageLoe) {
+            hits.increment();
+            return OptionalLong.of(0);
+        }
+
+        Collection<NavigableMap<Integer, LongAdder>> histograms = normalized.getTeamname() == null
+                ? byTeam.values()
+                : Arrays.stream(teams.idsNamed(normalized.getTeamname()))
+                        .mapToObj(byTeam::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+        long total = 0;
+        for (NavigableMap<Integer, LongAdder> histogram : histograms) {
+            for (LongAdder bucket : histogram.subMap(ageGoe, true, ageLoe, true).values()) {
+                total += bucket.sum();
+            }
+        }
+        hits.increment();
+        return OptionalLong.of(total);
+    }
+
+    /**
+     * MemberJpaRepository.totalCount(age) 용
+     */
+    public OptionalLong countByAge(int age) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setAgeGoe(age);
+        cond.setAgeLoe(age);
+        return count(cond);
+    }
+
+    /**
+     * 커밋된 데이터만 알고 있으므로 Member/Team 을 바꾼 트랜잭션 안에서는 쓰지 않는다. (자기 변경이 빠진 count 가 된다)
+     */
+    public boolean isAvailable() {
+        return ready && pendingBulkUpdates.get() == 0 && !TransactionWrites.hasWritten();
+    }
+
+    /**
+     * 한 트랜잭션의 회원 변경은 커밋될 때 순서대로 반영되고, 롤백되면 버려진다.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void afterMemberCommitted(EntityChangedEvent event) {
+        if (properties.isEnabled() && event.isMember()) {
+            applyCommitted(() -> apply(event));
+        }
+    }
+
+    /**
+     * write-behind 가 바꾼 나이 - 바뀐 회원만 버킷을 옮긴다.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void afterAgesCommitted(MemberAgesChangedEvent event) {
+        if (properties.isEnabled()) {
+            applyCommitted(() -> event.getChanges().forEach((id, change) -> {
+                Placement placement = placements.get(id);
+                if (placement != null) {
+                    unplace(id);
+                    place(id, placement.teamId, change.getAfter());
+                }
+            }));
+        }
+    }
+
+    /**
+     * 히스토그램을 만드는 중이면 큐에 넣어 두고 build() 가 끝날 때 반영한다.
+     */
+    private void applyCommitted(Runnable change) {
+        if (!ready) {
+            committedDuringBuild.add(change);
+            if (!ready) {
+                return;
+            }
+            // 큐에 넣는 사이에 build() 가 끝났으면 직접 비운다
+            synchronized (writeLock) {
+                replayCommittedDuringBuild();
+            }
+            return;
+        }
+        synchronized (writeLock) {
+            change.run();
+        }
+    }
+
+    /**
+     * writeLock 안에서 호출한다.
+     */
+    private void replayCommittedDuringBuild() {
+        Runnable change;
+        while ((change = committedDuringBuild.poll()) != null) {
+            change.run();
+        }
+    }
+
+    private void apply(EntityChangedEvent event) {
+        Member member = (Member) event.getEntity();
+        unplace(member.getId());
+        if (event.getType() != EntityChangedEvent.Type.REMOVE) {
+            place(member.getId(), TeamNameDirectory.teamIdOf(member), member.getAge());
+        }
+    }
+
+    /**
+     * 벌크 연산은 어떤 회원이 바뀌었는지 알 수 없으므로 트랜잭션이 끝날 때까지 사용하지 않는다.
+     */
+    @EventListener
+    public void onBulkUpdated(MemberBulkUpdatedEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingBulkUpdates.incrementAndGet();
+        } else if (properties.isEnabled()) {
+            rebuildFrom(event.getAgeGoe());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterBulkUpdateCompleted(MemberBulkUpdatedEvent event) {
+        try {
+            // 만드는 중이어도 건너뛰지 않는다 - writeLock 을 기다렸다가 build() 가 읽은 뒤의 값으로 다시 읽는다
+            if (properties.isEnabled()) {
+                rebuildFrom(event.getAgeGoe());
+            }
+        } finally {
+            pendingBulkUpdates.decrementAndGet();
+        }
+    }
+
+    /**
+     * bulkAgePlus 는 age >= ageGoe 인 회원만 올리므로 그 나이대만 다시 읽는다. (null 이면 전체)
+     */
+    private void rebuildFrom(Integer ageGoe) {
+        if (ageGoe == null) {
+            build();
+            return;
+        }
+        // 읽은 뒤 락을 잡으면 그 사이 반영된 더 새로운 커밋을 덮어쓸 수 있으므로 락 안에서 읽는다
+        synchronized (writeLock) {
+            jdbcTemplate.query("select member_id, team_id, age from member where age >= ?", rs -> {
+                long id = rs.getLong(1);
+                unplace(id);
+                place(id, rs.getLong(2), rs.getInt(3));
+            }, ageGoe);
+        }
+    }
+
+    private void place(long memberId, long teamId, int age) {
+        placements.put(memberId, new Placement(teamId, age));
+        byTeam.computeIfAbsent(teamId, k -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(age, k -> new LongAdder())
+                .increment();
+    }
+
+    private void unplace(Long memberId) {
+        Placement placement = memberId == null ? null : placements.remove(memberId);
+        if (placement == null) {
+            return;
+        }
+        NavigableMap<Integer, LongAdder> histogram = byTeam.get(placement.teamId);
+        LongAdder bucket = histogram == null ? null : histogram.get(placement.age);
+        if (bucket != null) {
+            bucket.decrement();
+        }
+    }
+
+    private static class Placement {
+        private final long teamId;
+        private final int age;
+
+        private Placement(long teamId, int age) {
+            this.teamId = teamId;
+            this.age = age;
+        }
+    }
+}
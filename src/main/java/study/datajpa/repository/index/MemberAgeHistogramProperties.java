@@ -0,0 +1,14 @@
+package study.datajpa.repository.index;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "member.age-histogram")
+public class MemberAgeHistogramProperties {
+
+    private boolean enabled = true;
+}
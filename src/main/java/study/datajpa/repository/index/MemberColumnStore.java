@@ -0,0 +1,414 @@
+package study.datajpa.repository.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.entity.EntityChangedEvent;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberAgesChangedEvent;
+import study.datajpa.entity.MemberBulkLoadedEvent;
+import study.datajpa.entity.MemberBulkUpdatedEvent;
+import study.datajpa.repository.cache.TransactionWrites;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 회원 검색용 인메모리 컬럼 저장소(read model).
+ * id, age, team_id, username 코드를 행 번호가 같은 기본형 배열에 나눠 담고, 검색은 배열을 순서대로 훑는다.
+ * 행마다 객체를 만들지 않으므로 결과로 내보낼 행만 MemberDto 로 만든다.
+ *
+ * 커밋된 변경만 반영하므로 다른 트랜잭션의 커밋 전 insert/update/delete 는 보이지 않는다.
+ * 대신 Member/Team 을 바꾼 트랜잭션 안에서는 자기 변경을 볼 수 없으므로 사용할 수 없다(null 반환 - JPA 로 검색).
+ * 벌크 연산 중에도 사용할 수 없고 트랜잭션이 끝나면 바뀐 나이를 다시 읽는다.
+ */
+@Slf4j
+@Component
+public class MemberColumnStore {
+
+    private static final long NO_TEAM = TeamNameDirectory.NO_TEAM;
+    private static final long DELETED = 0L; // ids[i] == DELETED 면 삭제된 행
+
+    private final MemberColumnStoreProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TeamNameDirectory teams;
+    private final Timer buildTimer;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger pendingBulkUpdates = new AtomicInteger();
+    private final Queue<Runnable> committedDuringBuild = new ConcurrentLinkedQueue<>();
+    private volatile boolean ready;
+
+    // 컬럼 - 같은 인덱스가 한 회원이다
+    private long[] ids;
+    private int[] ages;
+    private long[] teamIds;
+    private int[] usernameCodes;
+    private int size; // 삭제된 행 포함
+    private int deleted;
+    private final Map<Long, Integer> rows = new HashMap<>();
+
+    // username 사전 - 같은 username 은 한번만 저장한다
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    public MemberColumnStore(MemberColumnStoreProperties properties, JdbcTemplate jdbcTemplate,
+                             TeamNameDirectory teams, MeterRegistry registry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.teams = teams;
+        this.buildTimer = Timer.builder("member.read.model.build").register(registry);
+        Gauge.builder("member.read.model.rows", this, MemberColumnStore::liveRows).register(registry);
+        allocate(properties.getInitialCapacity());
+    }
+
+    @EventListener({ApplicationReadyEvent.class, MemberBulkLoadedEvent.class})
+    public void build() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            allocate(properties.getInitialCapacity());
+            size = 0;
+            deleted = 0;
+            rows.clear();
+            dictionary.clear();
+            codes.clear();
+            jdbcTemplate.query("select member_id, username, age, team_id from member order by member_id",
+                    rs -> { upsert(rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getLong(4)); });
+            ready = true;
+            // 읽는 도중 커밋된 변경은 select 에 들어갔는지 알 수 없으므로 다시 반영한다 (같은 변경을 두번 반영해도 결과는 같다)
+            replayCommittedDuringBuild();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        long elapsed = System.nanoTime() - start;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("member read model built: {} rows, {} usernames in {} ms",
+                liveRows(), dictionary.size(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    public boolean isAvailable() {
+        return ready && pendingBulkUpdates.get() == 0 && !TransactionWrites.hasWritten();
+    }
+
+    /**
+     * MemberRepositoryCustom.search 와 같은 결과(member id 순). 사용할 수 없으면 null
+     */
+    public List<MemberDto> search(MemberSearchCondition cond) {
+        if (!isAvailable()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int[] matched = scan(cond.normalized());
+            List<MemberDto> result = new ArrayList<>(matched.length);
+            for (int row : matched) {
+                result.add(toDto(row));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * searchPageSimple/searchPageComplex 와 같은 페이지(member id 순). 정렬 조건이 있거나 사용할 수 없으면 null
+     */
+    public Page<MemberDto> searchPage(MemberSearchCondition cond, Pageable pageable) {
+        if (!isAvailable() || pageable.getSort().isSorted()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int[] matched = scan(cond.normalized());
+            int from = (int) Math.min(pageable.getOffset(), matched.length);
+            int to = Math.min(from + pageable.getPageSize(), matched.length);
+            List<MemberDto> content = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                content.add(toDto(matched[i]));
+            }
+            return new PageImpl<>(content, pageable, matched.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 커밋된 회원 변경만 반영한다. 한 트랜잭션의 이벤트는 커밋될 때 순서대로 처리되고, 롤백되면 버려진다.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void afterMemberCommitted(EntityChangedEvent event) {
+        if (properties.isEnabled() && event.isMember()) {
+            applyCommitted(() -> apply(event));
+        }
+    }
+
+    /**
+     * write-behind 가 바꾼 나이 - 바뀐 회원의 나이만 고친다.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void afterAgesCommitted(MemberAgesChangedEvent event) {
+        if (properties.isEnabled()) {
+            applyCommitted(() -> event.getChanges().forEach((id, change) -> {
+                Integer row = rows.get(id);
+                if (row != null) {
+                    ages[row] = change.getAfter();
+                }
+            }));
+        }
+    }
+
+    /**
+     * 저장소를 만드는 중이면 큐에 넣어 두고 build() 가 끝날 때 반영한다.
+     */
+    private void applyCommitted(Runnable change) {
+        if (!ready) {
+            committedDuringBuild.add(change);
+            if (!ready) {
+                return;
+            }
+            // 큐에 넣는 사이에 build() 가 끝났으면 직접 비운다
+            lock.writeLock().lock();
+            try {
+                replayCommittedDuringBuild();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 쓰기 락 안에서 호출한다.
+     */
+    private void replayCommittedDuringBuild() {
+        Runnable change;
+        while ((change = committedDuringBuild.poll()) != null) {
+            change.run();
+        }
+    }
+
+    private void apply(EntityChangedEvent event) {
+        Member member = (Member) event.getEntity();
+        if (event.getType() == EntityChangedEvent.Type.REMOVE) {
+            remove(member.getId());
+        } else {
+            upsert(member.getId(), member.getUsername(), member.getAge(), TeamNameDirectory.teamIdOf(member));
+        }
+    }
+
+    /**
+     * 벌크 연산은 어떤 행이 바뀌었는지 알 수 없으므로 트랜잭션이 끝날 때까지 사용하지 않는다.
+     */
+    @EventListener
+    public void onBulkUpdated(MemberBulkUpdatedEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingBulkUpdates.incrementAndGet();
+        } else if (properties.isEnabled()) {
+            reloadAges(event.getAgeGoe());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterBulkUpdateCompleted(MemberBulkUpdatedEvent event) {
+        try {
+            // 만드는 중이어도 건너뛰지 않는다 - 쓰기 락을 기다렸다가 build() 가 읽은 뒤의 값으로 다시 읽는다
+            if (properties.isEnabled()) {
+                reloadAges(event.getAgeGoe());
+            }
+        } finally {
+            pendingBulkUpdates.decrementAndGet();
+        }
+    }
+
+    /**
+     * 조건에 맞는 행 번호. 분기 없이 비교할 수 있는 나이 조건을 먼저 걸러 배열을 순서대로 읽는다.
+     * 읽기 락 안에서 호출한다.
+     */
+    private int[] scan(MemberSearchCondition cond) {
+        int ageGoe = cond.getAgeGoe() != null ? cond.getAgeGoe() : Integer.MIN_VALUE;
+        int ageLoe = cond.getAgeLoe() != null ? cond.getAgeLoe() : Integer.MAX_VALUE;
+        long[] teamFilter = cond.getTeamname() == null ? null : teams.idsNamed(cond.getTeamname());
+        boolean[] usernameFilter = cond.getUsername() == null ? null : matchingCodes(cond);
+        if (teamFilter != null && teamFilter.length == 0) {
+            return new int[0];
+        }
+
+        long[] ids = this.ids;
+        int[] ages = this.ages;
+        int[] matched = new int[Math.min(size, 1024)];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int age = ages[i];
+            if ((age < ageGoe) | (age > ageLoe) | (ids[i] == DELETED)) {
+                continue;
+            }
+            if (teamFilter != null && !contains(teamFilter, teamIds[i])) {
+                continue;
+            }
+            if (usernameFilter != null && !usernameFilter[usernameCodes[i]]) {
+                continue;
+            }
+            if (count == matched.length) {
+                matched = Arrays.copyOf(matched, Math.max(16, count * 2));
+            }
+            matched[count++] = i;
+        }
+        return Arrays.copyOf(matched, count);
+    }
+
+    private boolean[] matchingCodes(MemberSearchCondition cond) {
+        boolean[] matches = new boolean[dictionary.size()];
+        for (int code = 0; code < matches.length; code++) {
+            matches[code] = cond.usernameMatches(dictionary.get(code));
+        }
+        return matches;
+    }
+
+    private static boolean contains(long[] values, long value) {
+        for (long v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MemberDto toDto(int row) {
+        long teamId = teamIds[row];
+        return new MemberDto(ids[row], dictionary.get(usernameCodes[row]), ages[row],
+                teamId == NO_TEAM ? null : teamId,
+                teams.nameOf(teamId));
+    }
+
+    /**
+     * 쓰기 락 안에서 호출한다.
+     */
+    private void upsert(long id, String username, int age, long teamId) {
+        Integer row = rows.get(id);
+        if (row == null) {
+            if (size == ids.length) {
+                grow();
+            }
+            row = size++;
+            rows.put(id, row);
+            ids[row] = id;
+        }
+        ages[row] = age;
+        teamIds[row] = teamId;
+        usernameCodes[row] = codeOf(username);
+    }
+
+    private void remove(Long id) {
+        Integer row = rows.remove(id);
+        if (row == null) {
+            return;
+        }
+        ids[row] = DELETED;
+        deleted++;
+        if (deleted > size / 4) {
+            compact();
+        }
+    }
+
+    private int codeOf(String username) {
+        return codes.computeIfAbsent(username, k -> {
+            dictionary.add(k);
+            return dictionary.size() - 1;
+        });
+    }
+
+    /**
+     * bulkAgePlus 는 age >= ageGoe 인 회원만 올리므로, 바뀐 행은 모두 age >= ageGoe 로 다시 읽으면 된다.
+     */
+    private void reloadAges(Integer ageGoe) {
+        if (ageGoe == null) {
+            build();
+            return;
+        }
+        // 읽은 뒤 락을 잡으면 그 사이 반영된 더 새로운 커밋을 덮어쓸 수 있으므로 락 안에서 읽는다
+        lock.writeLock().lock();
+        try {
+            jdbcTemplate.query("select member_id, age from member where age >= ?", rs -> {
+                Integer row = rows.get(rs.getLong(1));
+                if (row != null) {
+                    ages[row] = rs.getInt(2);
+                }
+            }, ageGoe);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compact() {
+        int live = 0;
+        rows.clear();
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == DELETED) {
+                continue;
+            }
+            ids[live] = ids[i];
+            ages[live] = ages[i];
+            teamIds[live] = teamIds[i];
+            usernameCodes[live] = usernameCodes[i];
+            rows.put(ids[live], live);
+            live++;
+        }
+        size = live;
+        deleted = 0;
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        ages = new int[capacity];
+        teamIds = new long[capacity];
+        usernameCodes = new int[capacity];
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        teamIds = Arrays.copyOf(teamIds, capacity);
+        usernameCodes = Arrays.copyOf(usernameCodes, capacity);
+    }
+
+    private int liveRows() {
+        lock.readLock().lock();
+        try {
+            return size - deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package study.datajpa.repository.index;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "member.read-model")
+public class MemberColumnStoreProperties {
+
+    private boolean enabled = false;
+    private int initialCapacity = 1024;
+}
@@ -0,0 +1,91 @@
+package study.datajpa.repository.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.stereotype.Component;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 컬럼 저장소 결과를 JPA 검색 결과와 비교한다. (같은 조건, member id 기준)
+ */
+@Component
+public class MemberReadModelVerifier {
+
+    private final MemberColumnStore columnStore;
+    private final MemberRepository memberRepository;
+    private final Counter consistent;
+    private final Counter inconsistent;
+
+    public MemberReadModelVerifier(MemberColumnStore columnStore, MemberRepository memberRepository,
+                                   MeterRegistry registry) {
+        this.columnStore = columnStore;
+        this.memberRepository = memberRepository;
+        this.consistent = registry.counter("member.read.model.verify", "result", "consistent");
+        this.inconsistent = registry.counter("member.read.model.verify", "result", "inconsistent");
+    }
+
+    public Report verify(MemberSearchCondition cond) {
+        // 컬럼 저장소는 커밋된 데이터만 가지므로, Member/Team 을 바꾼 트랜잭션 안에서는 unavailable 이다
+        List<MemberDto> expected = memberRepository.search(cond);
+        List<MemberDto> actual = columnStore.search(cond);
+        if (actual == null) {
+            return Report.unavailable();
+        }
+
+        Map<Long, MemberDto> actualById = actual.stream()
+                .collect(Collectors.toMap(MemberDto::getId, Function.identity()));
+        Report report = new Report(expected.size(), actual.size());
+        for (MemberDto dto : expected) {
+            MemberDto found = actualById.remove(dto.getId());
+            if (found == null) {
+                report.missing.add(dto.getId());
+            } else if (!Objects.equals(found, dto)) {
+                report.mismatched.add(dto.getId());
+            }
+        }
+        report.unexpected.addAll(actualById.keySet());
+
+        (report.isConsistent() ? consistent : inconsistent).increment();
+        return report;
+    }
+
+    @Getter
+    @ToString
+    public static class Report {
+        private final boolean available;
+        private final int expected;
+        private final int actual;
+        private final List<Long> missing = new ArrayList<>();    // JPA 에만 있음
+        private final List<Long> unexpected = new ArrayList<>(); // 컬럼 저장소에만 있음
+        private final List<Long> mismatched = new ArrayList<>(); // 값이 다름
+
+        private Report(int expected, int actual) {
+            this(true, expected, actual);
+        }
+
+        private Report(boolean available, int expected, int actual) {
+            this.available = available;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        private static Report unavailable() {
+            return new Report(false, 0, 0);
+        }
+
+        public boolean isConsistent() {
+            return available && missing.isEmpty() && unexpected.isEmpty() && mismatched.isEmpty();
+        }
+    }
+}
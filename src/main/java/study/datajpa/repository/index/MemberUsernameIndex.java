@@ -0,0 +1,246 @@
+package study.datajpa.repository.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.dto.UsernameMatchMode;
+import study.datajpa.entity.EntityChangedEvent;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberBulkLoadedEvent;
+import study.datajpa.repository.cache.TransactionWrites;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * username -> member id 인메모리 인덱스.
+ * PREFIX 는 정렬된 맵(username 순)의 구간 조회로, INFIX 는 3-gram 역색인의 교집합으로 후보를 찾는다.
+ * 기동 시 한번 만들고, 이후에는 커밋된 회원 변경만 반영한다. (커밋 전 rename/delete 로 다른 요청의 후보가 빠지지 않는다)
+ * 회원을 바꾼 트랜잭션 안에서는 자기 변경이 없는 인덱스이므로 쓰지 않는다.
+ */
+@Slf4j
+@Component
+public class MemberUsernameIndex {
+
+    private static final int GRAM = 3;
+
+    private final MemberUsernameIndexProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final Timer buildTimer;
+
+    private final Map<Long, String> usernames = new ConcurrentHashMap<>();
+    private final NavigableMap<String, Set<Long>> byUsername = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<Long>> byTrigram = new ConcurrentHashMap<>();
+    private final Queue<EntityChangedEvent> committedDuringBuild = new ConcurrentLinkedQueue<>();
+    private final Object writeLock = new Object();
+    private volatile boolean ready;
+
+    public MemberUsernameIndex(MemberUsernameIndexProperties properties, JdbcTemplate jdbcTemplate,
+                               MeterRegistry registry) {
+        this.properties = properties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.buildTimer = Timer.builder("member.username.index.build").register(registry);
+        Gauge.builder("member.username.index.size", usernames, Map::size).register(registry);
+        Gauge.builder("member.username.index.bytes", this, MemberUsernameIndex::estimatedBytes)
+                .description("rough estimate of the heap used by the index")
+                .register(registry);
+    }
+
+    @EventListener({ApplicationReadyEvent.class, MemberBulkLoadedEvent.class})
+    public void build() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        synchronized (writeLock) {
+            ready = false;
+            usernames.clear();
+            byUsername.clear();
+            byTrigram.clear();
+            jdbcTemplate.query("select member_id, username from member",
+                    rs -> add(rs.getLong(1), rs.getString(2)));
+            ready = true;
+            // 읽는 도중 커밋된 변경은 select 에 들어갔는지 알 수 없으므로 다시 반영한다 (같은 변경을 두번 반영해도 결과는 같다)
+            replayCommittedDuringBuild();
+        }
+        long elapsed = System.nanoTime() - start;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("member username index built: {} usernames, {} trigrams, ~{} KB in {} ms",
+                usernames.size(), byTrigram.size(), estimatedBytes() / 1024,
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    /**
+     * PREFIX, INFIX 검색의 후보 id. (username 이 실제로 일치하는 회원만)
+     * 인덱스를 쓸 수 없거나 후보가 너무 많으면 null - DB 의 LIKE 로만 조회한다.
+     */
+    public Collection<Long> candidates(MemberSearchCondition cond) {
+        MemberSearchCondition normalized = cond.normalized();
+        String keyword = normalized.getUsername();
+        UsernameMatchMode mode = normalized.getUsernameMatch();
+        if (!ready || keyword == null || mode == UsernameMatchMode.EXACT || TransactionWrites.hasWritten()) {
+            return null;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        if (mode == UsernameMatchMode.PREFIX) {
+            for (Set<Long> matched : byUsername.subMap(keyword, true, keyword + Character.MAX_VALUE, true).values()) {
+                ids.addAll(matched);
+                if (ids.size() > properties.getMaxCandidates()) {
+                    return null;
+                }
+            }
+            return ids;
+        }
+
+        Collection<Long> scanned = keyword.length() < GRAM ? usernames.keySet() : trigramCandidates(keyword);
+        for (Long id : scanned) {
+            // 3-gram 교집합은 후보일 뿐이므로 실제 username 으로 한번 더 거른다
+            if (mode.matches(usernames.get(id), keyword)) {
+                ids.add(id);
+                if (ids.size() > properties.getMaxCandidates()) {
+                    return null;
+                }
+            }
+        }
+        return ids;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 한 트랜잭션의 회원 변경은 커밋될 때 순서대로 반영되고, 롤백되면 버려진다.
+     * 인덱스를 만드는 중이면 큐에 넣어 두고 build() 가 끝날 때 반영한다.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void afterMemberCommitted(EntityChangedEvent event) {
+        if (!properties.isEnabled() || !event.isMember()) {
+            return;
+        }
+        if (!ready) {
+            committedDuringBuild.add(event);
+            if (!ready) {
+                return;
+            }
+            // 큐에 넣는 사이에 build() 가 끝났으면 직접 비운다
+            synchronized (writeLock) {
+                replayCommittedDuringBuild();
+            }
+            return;
+        }
+        synchronized (writeLock) {
+            apply(event);
+        }
+    }
+
+    /**
+     * writeLock 안에서 호출한다.
+     */
+    private void replayCommittedDuringBuild() {
+        EntityChangedEvent event;
+        while ((event = committedDuringBuild.poll()) != null) {
+            apply(event);
+        }
+    }
+
+    private void apply(EntityChangedEvent event) {
+        Member member = (Member) event.getEntity();
+        remove(member.getId());
+        if (event.getType() != EntityChangedEvent.Type.REMOVE) {
+            add(member.getId(), member.getUsername());
+        }
+    }
+
+    private Collection<Long> trigramCandidates(String keyword) {
+        List<Set<Long>> postings = new ArrayList<>();
+        for (String gram : trigrams(keyword)) {
+            Set<Long> posting = byTrigram.get(gram);
+            if (posting == null) {
+                return Collections.emptyList();
+            }
+            postings.add(posting);
+        }
+        // 가장 작은 posting 부터 교집합
+        postings.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        return postings.get(0).stream()
+                .filter(id -> postings.stream().allMatch(p -> p.contains(id)))
+                .collect(Collectors.toList());
+    }
+
+    private void add(Long id, String username) {
+        if (id == null || username == null) {
+            return;
+        }
+        usernames.put(id, username);
+        byUsername.computeIfAbsent(username, k -> ConcurrentHashMap.newKeySet()).add(id);
+        for (String gram : trigrams(username)) {
+            byTrigram.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    private void remove(Long id) {
+        String username = id == null ? null : usernames.remove(id);
+        if (username == null) {
+            return;
+        }
+        removePosting(byUsername, username, id);
+        for (String gram : trigrams(username)) {
+            removePosting(byTrigram, gram, id);
+        }
+    }
+
+    private static void removePosting(Map<String, Set<Long>> index, String key, Long id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private static Set<String> trigrams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    /**
+     * 대략적인 힙 사용량. 엔트리/노드 48바이트, Long 16바이트, String 40바이트 + 문자 수로 계산한다.
+     */
+    private double estimatedBytes() {
+        long bytes = 0;
+        for (String username : byUsername.keySet()) {
+            bytes += 40 + username.length() + 48;
+        }
+        bytes += (long) usernames.size() * (48 + 16);
+        for (Set<Long> ids : byUsername.values()) {
+            bytes += (long) ids.size() * 48;
+        }
+        for (Map.Entry<String, Set<Long>> e : byTrigram.entrySet()) {
+            bytes += 40 + GRAM + 48 + (long) e.getValue().size() * 48;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,16 @@
+package study.datajpa.repository.index;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter @Setter
+@Component
+@ConfigurationProperties(prefix = "member.username-index")
+public class MemberUsernameIndexProperties {
+
+    private boolean enabled = true;
+    // 후보가 이보다 많으면 IN 절 대신 LIKE 로만 조회한다
+    private int maxCandidates = 10000;
+}
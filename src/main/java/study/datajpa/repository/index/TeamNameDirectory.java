@@ -0,0 +1,87 @@
+package study.datajpa.repository.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.datajpa.entity.EntityChangedEvent;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberBulkLoadedEvent;
+import study.datajpa.entity.Team;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 인메모리 read model(컬럼 저장소, 나이 히스토그램)이 함께 쓰는 team id -> 팀 이름.
+ * 기동 시 한번 읽고, 이후에는 커밋된 팀 변경만 반영한다.
+ */
+@Slf4j
+@Component
+public class TeamNameDirectory {
+
+    public static final long NO_TEAM = 0L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, String> teamNames = new ConcurrentHashMap<>();
+
+    public TeamNameDirectory(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 다른 read model 의 build() 보다 먼저 실행한다.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener({ApplicationReadyEvent.class, MemberBulkLoadedEvent.class})
+    public synchronized void build() {
+        teamNames.clear();
+        jdbcTemplate.query("select team_id, name from team",
+                rs -> { teamNames.put(rs.getLong(1), rs.getString(2)); });
+        log.info("team name directory built: {} teams", teamNames.size());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void afterTeamCommitted(EntityChangedEvent event) {
+        if (!event.isTeam()) {
+            return;
+        }
+        Team team = (Team) event.getEntity();
+        if (event.getType() == EntityChangedEvent.Type.REMOVE) {
+            teamNames.remove(team.getId());
+        } else {
+            teamNames.put(team.getId(), team.getName());
+        }
+    }
+
+    public String nameOf(long teamId) {
+        return teamId == NO_TEAM ? null : teamNames.get(teamId);
+    }
+
+    public long[] idsNamed(String teamname) {
+        return teamNames.entrySet().stream()
+                .filter(e -> teamname.equals(e.getValue()))
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    /**
+     * 영속성 컨텍스트 밖(커밋 후)에서도 호출되므로 팀 프록시를 초기화하지 않고 id 만 꺼낸다.
+     */
+    public static long teamIdOf(Member member) {
+        Team team = member.getTeam();
+        if (team == null) {
+            return NO_TEAM;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team.getId() != null ? team.getId() : NO_TEAM;
+    }
+}
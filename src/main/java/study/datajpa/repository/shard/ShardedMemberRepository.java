@@ -0,0 +1,267 @@
+package study.datajpa.repository.shard;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import study.datajpa.config.Shards;
+import study.datajpa.config.ShardingProperties;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberSearchQueries;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 팀 단위 샤딩 - 팀과 그 팀의 회원은 같은 샤드에 저장한다.
+ * 검색은 대상 샤드에 동시에 보내고(scatter) member id 순으로 합쳐서 다시 페이징한다(gather).
+ * teamname 조건이 있으면 팀 디렉터리로 그 팀이 있는 샤드에만 보낸다.
+ *
+ * 샤드로 보내는 건 이 클래스의 저장과 MemberRepository 의 search, searchPageSimple, searchPageComplex 뿐이다.
+ * MemberRepository.save, searchByCursor, streamSearch, /members 목록 같은 나머지 메소드는 기본 데이터소스를 그대로 쓴다.
+ *
+ * 저장한 회원의 팀은 changeTeam 으로만 바꾼다. 다른 샤드의 팀으로 옮기는 건 거부한다 - 옮기려면 대상 샤드에서 새 id 를 받아야 해서
+ * 회원 id 가 바뀌므로, 호출하는 쪽이 지우고 새 팀으로 다시 저장해야 한다.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "sharding", name = "enabled", havingValue = "true")
+public class ShardedMemberRepository implements DisposableBean {
+
+    private static final Comparator<MemberDto> BY_MEMBER_ID = Comparator.comparing(MemberDto::getId);
+
+    private final Shards shards;
+    private final MemberSearchQueries searchQueries;
+    private final ShardingProperties properties;
+    private final ExecutorService executor;
+
+    // 팀 이름 -> 그 이름의 팀이 있는 샤드 번호 (이름이 같은 팀이 여러 샤드에 있을 수 있다)
+    private final Map<String, Set<Integer>> teamDirectory = new ConcurrentHashMap<>();
+
+    private final Counter fanOutAll;
+    private final Counter fanOutPruned;
+    private final Timer gatherTimer;
+
+    public ShardedMemberRepository(Shards shards,
+                                   MemberSearchQueries searchQueries,
+                                   ShardingProperties properties,
+                                   MeterRegistry registry) {
+        this.shards = shards;
+        this.searchQueries = searchQueries;
+        this.properties = properties;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(properties.getSearchPoolSize(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-search-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.fanOutAll = registry.counter("member.shard.search", "fanout", "all");
+        this.fanOutPruned = registry.counter("member.shard.search", "fanout", "pruned");
+        this.gatherTimer = registry.timer("member.shard.gather");
+
+        for (Shards.Shard shard : shards.all()) {
+            List<String> names = shard.getReadTx().execute(status -> shard.getEntityManager()
+                    .createQuery("select t.name from Team t", String.class)
+                    .getResultList());
+            names.forEach(name -> register(name, shard.getIndex()));
+        }
+    }
+
+    public Team saveTeam(Team team) {
+        Shards.Shard shard = shards.forNewTeam(team.getName());
+        shard.getWriteTx().executeWithoutResult(status -> shard.getEntityManager().persist(team));
+        register(team.getName(), shard.getIndex());
+        return team;
+    }
+
+    /**
+     * 회원은 팀 id 로 계산한 샤드에 저장한다. 팀이 없으면 username 해시로 고른다.
+     */
+    public Member saveMember(Member member) {
+        Shards.Shard shard = shardOf(member);
+        shard.getWriteTx().executeWithoutResult(status -> shard.getEntityManager().persist(member));
+        return member;
+    }
+
+    /**
+     * 같은 샤드의 팀으로만 옮긴다. 다른 샤드의 팀이면 IllegalArgumentException.
+     */
+    public Member changeTeam(Member member, Team team) {
+        Shards.Shard source = shardOf(member);
+        Shards.Shard target = shards.forTeamId(team.getId());
+        if (source.getIndex() != target.getIndex()) {
+            throw new IllegalArgumentException(String.format(
+                    "member %d is on shard-%d but team %d is on shard-%d - delete it and save it again with the new team",
+                    member.getId(), source.getIndex(), team.getId(), target.getIndex()));
+        }
+        return source.getWriteTx().execute(status -> {
+            EntityManager em = source.getEntityManager();
+            Member managed = em.find(Member.class, member.getId());
+            if (managed == null) {
+                throw new IllegalArgumentException("member " + member.getId() + " does not exist on shard-" + source.getIndex());
+            }
+            managed.changeTeam(em.getReference(Team.class, team.getId()));
+            return managed;
+        });
+    }
+
+    /**
+     * 검색을 보낼 샤드 번호 - teamname 조건이 있으면 디렉터리에 있는 샤드만.
+     * 디렉터리는 이 인스턴스가 기동 후 본 팀만 알므로, 모르는 팀 이름이면 전체 샤드로 보낸다.
+     */
+    public Set<Integer> targetsFor(MemberSearchCondition cond) {
+        String teamname = cond.normalized().getTeamname();
+        Set<Integer> known = teamname == null ? null : teamDirectory.get(teamname);
+        if (known != null && !known.isEmpty()) {
+            return known;
+        }
+        Set<Integer> all = new TreeSet<>();
+        shards.all().forEach(shard -> all.add(shard.getIndex()));
+        return all;
+    }
+
+    public List<MemberDto> search(MemberSearchCondition cond) {
+        List<List<MemberDto>> results = scatter(cond,
+                shard -> searchQueries.contentOrderById(shard.getEntityManager(), cond).fetch());
+        List<MemberDto> merged = new ArrayList<>();
+        results.forEach(merged::addAll);
+        merged.sort(BY_MEMBER_ID);
+        return merged;
+    }
+
+    /**
+     * 샤드마다 앞에서부터 offset + size 건을 받아 합친 뒤 요청한 페이지만 잘라낸다.
+     * total 은 샤드별 count 의 합이다. (정렬은 member id 순 고정)
+     */
+    public Page<MemberDto> searchPage(MemberSearchCondition cond, Pageable pageable) {
+        int offset = (int) pageable.getOffset();
+        int limit = offset + pageable.getPageSize();
+        List<ShardPage> results = scatter(cond, shard -> new ShardPage(
+                searchQueries.contentOrderById(shard.getEntityManager(), cond).limit(limit).fetch(),
+                searchQueries.count(shard.getEntityManager(), cond).fetchOne()));
+
+        List<MemberDto> merged = new ArrayList<>();
+        long total = 0;
+        for (ShardPage result : results) {
+            merged.addAll(result.content);
+            total += result.total;
+        }
+        merged.sort(BY_MEMBER_ID);
+        List<MemberDto> content = offset >= merged.size()
+                ? Collections.emptyList()
+                : new ArrayList<>(merged.subList(offset, Math.min(limit, merged.size())));
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private <T> List<T> scatter(MemberSearchCondition cond, Function<Shards.Shard, T> query) {
+        Set<Integer> targets = targetsFor(cond);
+        (targets.size() == shards.size() ? fanOutAll : fanOutPruned).increment();
+
+        List<Future<T>> futures = new ArrayList<>();
+        for (int index : targets) {
+            Shards.Shard shard = shards.get(index);
+            futures.add(executor.submit(() -> shard.getReadTx().execute(status -> query.apply(shard))));
+        }
+        return gatherTimer.record(() -> gather(futures));
+    }
+
+    /**
+     * 전체 결과를 search-timeout 안에 모은다. 샤드 하나라도 실패하면 나머지를 취소하고 예외를 그대로 던진다.
+     */
+    private <T> List<T> gather(List<Future<T>> futures) {
+        long deadline = System.nanoTime() + properties.getSearchTimeout().toNanos();
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (TimeoutException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new QueryTimeoutException("shard search did not finish within " + properties.getSearchTimeout(), e);
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("interrupted while waiting for shard search", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void register(String teamname, int shardIndex) {
+        if (teamname != null) {
+            teamDirectory.computeIfAbsent(teamname, name -> ConcurrentHashMap.newKeySet()).add(shardIndex);
+        }
+    }
+
+    /**
+     * 회원이 저장된 샤드 - saveMember 와 같은 규칙이다.
+     */
+    private Shards.Shard shardOf(Member member) {
+        Long teamId = teamIdOf(member);
+        return teamId != null ? shards.forTeamId(teamId) : shards.forKey(member.getUsername());
+    }
+
+    /**
+     * 프록시를 초기화하지 않고 팀 id 를 읽는다.
+     */
+    private static Long teamIdOf(Member member) {
+        Team team = member.getTeam();
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team.getId();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static class ShardPage {
+        private final List<MemberDto> content;
+        private final long total;
+
+        private ShardPage(List<MemberDto> content, long total) {
+            this.content = content;
+            this.total = total;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package study.datajpa.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.repository.cache.MemberSearchCache;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 인메모리 H2 두 개로 primary / 레플리카 라우팅 확인 - select database() 로 어디서 실행됐는지 본다.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "datasource.routing.enabled=true",
+        "datasource.routing.replicas[0].name=replica-1",
+        "datasource.routing.replicas[0].url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1"
+})
+class ReplicaRoutingDataSourceTest {
+
+    @Autowired EntityManager em;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired MemberSearchCache searchCache;
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    public void readOnlyTransactionGoesToReplica() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        String writeDatabase = tx.execute(status -> currentDatabase());
+
+        tx.setReadOnly(true);
+        String readDatabase = tx.execute(status -> currentDatabase());
+
+        System.out.println("write = " + writeDatabase + ", read = " + readDatabase);
+        assertThat(writeDatabase).isEqualToIgnoringCase("primary");
+        assertThat(readDatabase).isEqualToIgnoringCase("replica");
+    }
+
+    @Test
+    public void laggingReplicaFallsBackToPrimary() throws Exception {
+        DataSourceRoutingProperties properties = new DataSourceRoutingProperties();
+        properties.setLagQuery("select 10"); // 10초 지연
+        properties.setMaxLag(Duration.ofSeconds(5));
+
+        ReplicaRoutingDataSource routing = routing(properties, "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1");
+
+        assertThat(readOnlyDatabase(routing)).isEqualToIgnoringCase("primary");
+        assertThat(routing.replicaStatus()).containsEntry("replica-1", false);
+        assertThat(fallbacks("lag")).isEqualTo(1);
+        assertThat(fallbacks("unavailable")).isZero();
+        routing.close();
+    }
+
+    @Test
+    public void unavailableReplicaFallsBackToPrimary() throws Exception {
+        DataSourceRoutingProperties properties = new DataSourceRoutingProperties();
+
+        ReplicaRoutingDataSource routing = routing(properties, "jdbc:h2:tcp://localhost:1/~/nowhere");
+
+        assertThat(readOnlyDatabase(routing)).isEqualToIgnoringCase("primary");
+        assertThat(routing.replicaStatus()).containsEntry("replica-1", false);
+
+        // 다음 확인 전까지는 접속해 보지 않고 바로 primary 로 - 이유는 lag 가 아니라 unavailable
+        assertThat(readOnlyDatabase(routing)).isEqualToIgnoringCase("primary");
+        assertThat(fallbacks("unavailable")).isEqualTo(2);
+        assertThat(fallbacks("lag")).isZero();
+        routing.close();
+    }
+
+    @Test
+    public void replicaReadsAreNotCached() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsername("replicaRead");
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            readOnly.executeWithoutResult(status -> {
+                searchCache.get(cond, () -> {
+                    loads.incrementAndGet();
+                    assertThat(currentDatabase()).isEqualToIgnoringCase("replica");
+                    return Collections.emptyList();
+                });
+                assertThat(ReplicaRoutingDataSource.isReplicaRead()).isTrue();
+            });
+        }
+
+        // 레플리카 결과는 저장하지 않으므로 매번 다시 읽는다
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(ReplicaRoutingDataSource.isReplicaRead()).isFalse();
+    }
+
+    private String currentDatabase() {
+        return (String) em.createNativeQuery("select database()").getSingleResult();
+    }
+
+    private ReplicaRoutingDataSource routing(DataSourceRoutingProperties properties, String replicaUrl) {
+        DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1", "sa", "");
+        DataSource replica = new DriverManagerDataSource(replicaUrl, "sa", "");
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary,
+                Collections.singletonMap("replica-1", replica), properties, registry);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    private double fallbacks(String reason) {
+        return registry.counter("datasource.route.fallback", "reason", reason).count();
+    }
+
+    private String readOnlyDatabase(DataSource dataSource) throws Exception {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try (Connection connection = dataSource.getConnection();
+             ResultSet rs = connection.createStatement().executeQuery("select database()")) {
+            rs.next();
+            return rs.getString(1);
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+    }
+}
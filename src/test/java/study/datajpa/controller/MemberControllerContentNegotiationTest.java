@@ -0,0 +1,71 @@
+package study.datajpa.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberControllerContentNegotiationTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    @Autowired MockMvc mockMvc;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+
+    @BeforeEach
+    public void before() {
+        Team team = teamRepository.save(new Team("negotiationTeam"));
+        for (int i = 0; i < 20; i++) {
+            memberRepository.save(new Member("negotiation" + i, i, team));
+        }
+    }
+
+    @Test
+    public void binaryFormats() throws Exception {
+        String url = "/v3/members?teamname=negotiationTeam&size=20";
+        byte[] json = body(url, MediaType.APPLICATION_JSON);
+        byte[] smile = body(url, SMILE);
+        byte[] cbor = body(url, MediaType.APPLICATION_CBOR);
+        System.out.println("json = " + json.length + " bytes, smile = " + smile.length + " bytes, cbor = " + cbor.length + " bytes");
+
+        // 같은 내용을 더 작게 인코딩한다
+        JsonNode expected = new ObjectMapper().readTree(json);
+        assertThat(new ObjectMapper(new SmileFactory()).readTree(smile)).isEqualTo(expected);
+        assertThat(new ObjectMapper(new CBORFactory()).readTree(cbor)).isEqualTo(expected);
+        assertThat(smile.length).isLessThan(json.length);
+        assertThat(cbor.length).isLessThan(json.length);
+
+        // Accept 가 없으면 지금처럼 JSON
+        MvcResult defaultResult = mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn();
+        assertThat(defaultResult.getResponse().getContentType()).startsWith(MediaType.APPLICATION_JSON_VALUE);
+    }
+
+    private byte[] body(String url, MediaType accept) throws Exception {
+        MvcResult result = mockMvc.perform(get(url).accept(accept))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertThat(MediaType.parseMediaType(result.getResponse().getContentType()).isCompatibleWith(accept)).isTrue();
+        return result.getResponse().getContentAsByteArray();
+    }
+}
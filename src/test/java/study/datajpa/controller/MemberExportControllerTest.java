@@ -0,0 +1,109 @@
+package study.datajpa.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 내보내기는 별도 스레드의 읽기 전용 트랜잭션에서 읽으므로 @Transactional 을 쓰지 않는다. (만든 팀/회원은 끝나고 지운다)
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberExportControllerTest {
+
+    // fetch size 를 넘겨서 커서가 여러 번 가져오게 한다
+    private static final int ROWS = MemberExportController.FETCH_SIZE + 5;
+
+    @Autowired MockMvc mockMvc;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    String teamname;
+    Long teamId;
+    List<Long> memberIds = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        teamname = "exportTeam" + System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = teamRepository.save(new Team(teamname));
+            teamId = team.getId();
+            List<Member> members = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                // 쉼표와 따옴표가 든 이름으로 CSV 이스케이프도 본다
+                members.add(new Member(i == 0 ? "export,\"0\"" : "export" + i, i % 100, team));
+            }
+            memberRepository.saveAll(members).forEach(m -> memberIds.add(m.getId()));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteAllById(memberIds);
+            teamRepository.deleteById(teamId);
+        });
+    }
+
+    @Test
+    public void exportJson() throws Exception {
+        String body = export("json");
+
+        JsonNode array = new ObjectMapper().readTree(body);
+        assertThat(array.isArray()).isTrue();
+        assertThat(array.size()).isEqualTo(ROWS);
+        JsonNode first = array.get(0);
+        assertThat(first.get("username").asText()).isEqualTo("export,\"0\"");
+        assertThat(first.get("teamId").asLong()).isEqualTo(teamId);
+        assertThat(first.get("teamname").asText()).isEqualTo(teamname);
+    }
+
+    @Test
+    public void exportCsv() throws Exception {
+        String body = export("csv");
+
+        String[] lines = body.split("\n");
+        System.out.println("csv lines = " + lines.length);
+        assertThat(lines).hasSize(ROWS + 1);
+        assertThat(lines[0]).isEqualTo("id,username,age,teamId,teamname");
+        assertThat(lines[1]).isEqualTo(memberIds.get(0) + ",\"export,\"\"0\"\"\",0," + teamId + "," + teamname);
+        for (int i = 2; i < lines.length; i++) {
+            assertThat(lines[i].split(",")).hasSize(5);
+        }
+    }
+
+    private String export(String format) throws Exception {
+        MvcResult started = mockMvc.perform(get("/members/export")
+                        .param("teamname", teamname)
+                        .param("format", format))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn();
+        return result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,69 @@
+package study.datajpa.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+import study.datajpa.repository.index.MemberAgeHistogram;
+import study.datajpa.repository.index.MemberColumnStore;
+import study.datajpa.repository.index.TeamNameDirectory;
+
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * seed 프로필이면 기동할 때 적재한다. 적재한 팀/회원은 끝나고 지운다.
+ */
+@SpringBootTest(properties = {
+        "spring.profiles.active=test,seed",
+        "member.seed.exit=false",
+        "member.seed.teams=2",
+        "member.seed.members=10",
+        "member.seed.team-prefix=seederTeam",
+        "member.bulk-load.chunk-size=4"
+})
+class MemberSeederTest {
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired MemberColumnStore columnStore;
+    @Autowired MemberAgeHistogram ageHistogram;
+    @Autowired TeamNameDirectory teams;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 2; i++) {
+                memberRepository.deleteAllById(memberRepository.search(condition("seederTeam" + i)).stream()
+                        .map(MemberDto::getId)
+                        .collect(Collectors.toList()));
+                for (long teamId : teams.idsNamed("seederTeam" + i)) {
+                    teamRepository.deleteById(teamId);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void seedOnStartup() {
+        MemberSearchCondition cond = condition("seederTeam1");
+
+        assertThat(memberRepository.search(cond)).extracting("username")
+                .containsExactly("member1", "member3", "member5", "member7", "member9");
+        assertThat(columnStore.search(cond)).hasSize(5);
+        assertThat(ageHistogram.count(cond)).hasValue(5);
+    }
+
+    private MemberSearchCondition condition(String teamname) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamname(teamname);
+        return cond;
+    }
+}
@@ -0,0 +1,55 @@
+package study.datajpa.entity.id;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:snowflake;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.id-generator.strategy=snowflake",
+        "spring.jpa.properties.hibernate.id-generator.node-id=42"
+})
+@Transactional
+class PluggableIdGeneratorTest {
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired ObjectMapper objectMapper;
+
+    @Test
+    public void snowflakeStrategy() {
+        Team team = teamRepository.save(new Team("teamA"));
+        Member member1 = memberRepository.save(new Member("member1", 10, team));
+        Member member2 = memberRepository.save(new Member("member2", 20, team));
+
+        System.out.println("team.id = " + team.getId() + ", member1.id = " + member1.getId());
+        assertThat(SnowflakeId.nodeOf(team.getId())).isEqualTo(42);
+        assertThat(SnowflakeId.nodeOf(member1.getId())).isEqualTo(42);
+        assertThat(member2.getId()).isGreaterThan(member1.getId());
+        assertThat(memberRepository.findById(member1.getId())).isPresent();
+    }
+
+    @Test
+    public void idsAreWrittenAsStrings() throws Exception {
+        Team team = teamRepository.save(new Team("teamA"));
+        Member member = memberRepository.save(new Member("member1", 10, team));
+
+        // 2^53 을 넘으므로 자바스크립트에서 정확히 읽을 수 있도록 문자열로 내보낸다
+        assertThat(member.getId()).isGreaterThan(1L << 53);
+        String json = objectMapper.writeValueAsString(
+                new MemberDto(member.getId(), member.getUsername(), member.getAge(), team.getId(), team.getName()));
+        System.out.println("json = " + json);
+        assertThat(json).contains("\"id\":\"" + member.getId() + "\"")
+                .contains("\"teamId\":\"" + team.getId() + "\"")
+                .contains("\"age\":10");
+    }
+}
@@ -0,0 +1,104 @@
+package study.datajpa.entity.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SnowflakeIdTest {
+
+    @Test
+    public void uniqueAndMonotonicUnderContention() throws Exception {
+        int threads = 16;
+        int perThread = 100_000;
+        SnowflakeId node1 = new SnowflakeId(1);
+        SnowflakeId node2 = new SnowflakeId(2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            SnowflakeId generator = t % 2 == 0 ? node1 : node2;
+            futures.add(executor.submit(() -> {
+                long[] ids = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    ids[i] = generator.next();
+                }
+                return ids;
+            }));
+        }
+
+        long[] all = new long[threads * perThread];
+        int position = 0;
+        for (int t = 0; t < threads; t++) {
+            long[] ids = futures.get(t).get();
+            // 한 스레드가 받은 id 는 항상 증가
+            for (int i = 1; i < ids.length; i++) {
+                assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+            }
+            assertThat(SnowflakeId.nodeOf(ids[0])).isEqualTo(t % 2 == 0 ? 1 : 2);
+            System.arraycopy(ids, 0, all, position, ids.length);
+            position += ids.length;
+        }
+        executor.shutdown();
+
+        // 노드를 섞어도 중복 없음
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertThat(all[i]).isNotEqualTo(all[i - 1]);
+        }
+        System.out.println("first = " + SnowflakeId.timestampOf(all[0]) + ", last = " + SnowflakeId.timestampOf(all[all.length - 1]));
+    }
+
+    @Test
+    public void sequenceOverflowAndClockBackwards() {
+        AtomicLong clock = new AtomicLong(SnowflakeId.EPOCH + 1_000);
+        SnowflakeId generator = new SnowflakeId(7, clock::get);
+
+        long previous = generator.next();
+        // 1ms 안에 순번(4096)을 넘겨도, 시계가 뒤로 가도 계속 증가한다
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5_000) {
+                clock.addAndGet(-500);
+            }
+            long id = generator.next();
+            assertThat(id).isGreaterThan(previous);
+            assertThat(SnowflakeId.nodeOf(id)).isEqualTo(7);
+            previous = id;
+        }
+        assertThat(SnowflakeId.timestampOf(previous).toEpochMilli()).isGreaterThan(SnowflakeId.EPOCH + 1_000);
+    }
+
+    @Test
+    public void advancePastAfterRestart() {
+        AtomicLong clock = new AtomicLong(SnowflakeId.EPOCH + 1_000);
+        SnowflakeId before = new SnowflakeId(7, clock::get);
+
+        // 순번을 넘겨 시계보다 앞선 밀리초까지 당겨 쓴다
+        long lastBeforeRestart = 0;
+        for (int i = 0; i < 10_000; i++) {
+            lastBeforeRestart = before.next();
+        }
+        assertThat(SnowflakeId.timestampOf(lastBeforeRestart).toEpochMilli()).isGreaterThan(clock.get());
+
+        // 재시작 - 같은 시각부터 다시 세면 이미 준 id 가 다시 나온다
+        SnowflakeId restarted = new SnowflakeId(7, clock::get);
+        assertThat(restarted.next()).isLessThan(lastBeforeRestart);
+
+        SnowflakeId advanced = new SnowflakeId(7, clock::get);
+        advanced.advancePast(lastBeforeRestart);
+        assertThat(advanced.next()).isGreaterThan(lastBeforeRestart);
+    }
+
+    @Test
+    public void nodeIdRange() {
+        assertThatThrownBy(() -> new SnowflakeId(SnowflakeId.MAX_NODE_ID + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
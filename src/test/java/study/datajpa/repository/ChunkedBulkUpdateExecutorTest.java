@@ -0,0 +1,90 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.datajpa.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 청크마다 별도 트랜잭션으로 커밋하므로 @Transactional 을 붙이지 않는다. (만든 회원, 진행 위치는 끝나고 지운다)
+ * 공유 DB 의 다른 회원이 대상에 들지 않도록 아주 큰 나이를 쓴다.
+ */
+@SpringBootTest(properties = "member.bulk-update.chunk-size=2")
+class ChunkedBulkUpdateExecutorTest {
+
+    private static final int AGE = 1_000_000;
+
+    @Autowired ChunkedBulkUpdateExecutor executor;
+    @Autowired MemberRepository memberRepository;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    String jobId;
+    List<Long> memberIds = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        jobId = "bulkAgePlus-" + System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            // 여섯 번째 회원은 +1 하면 int 범위를 넘어 그 청크에서 실패한다
+            int age = i == 5 ? Integer.MAX_VALUE : AGE + i;
+            memberIds.add(memberRepository.save(new Member("bulk" + i, age)).getId());
+        }
+    }
+
+    @AfterEach
+    public void after() {
+        memberRepository.deleteAllById(memberIds);
+        jdbcTemplate.update("delete from bulk_update_checkpoint where job_id = ?", jobId);
+    }
+
+    @Test
+    public void resumeAfterFailureUpdatesEachRowOnce() {
+        assertThatThrownBy(() -> executor.bulkAgePlus(jobId, AGE)).isInstanceOf(RuntimeException.class);
+
+        // 실패한 청크 앞까지는 커밋되었고, 실패한 청크부터는 그대로다
+        List<Integer> afterFailure = ages();
+        System.out.println("afterFailure = " + afterFailure);
+        assertThat(afterFailure.get(0)).isEqualTo(AGE + 1);
+        assertThat(afterFailure.get(9)).isEqualTo(AGE + 9);
+
+        // 원인을 고치고 같은 jobId 로 이어서 실행
+        jdbcTemplate.update("update member set age = ? where member_id = ?", AGE + 5, memberIds.get(5));
+        ChunkedBulkUpdateExecutor.Result result = executor.bulkAgePlus(jobId, AGE);
+
+        assertThat(result.isResumed()).isTrue();
+        List<Integer> ages = ages();
+        for (int i = 0; i < 10; i++) {
+            assertThat(ages.get(i)).as("member %d", i).isEqualTo(AGE + i + 1);
+        }
+
+        // 끝난 작업을 다시 실행해도 더 올리지 않는다
+        executor.bulkAgePlus(jobId, AGE);
+        assertThat(ages()).isEqualTo(ages);
+    }
+
+    @Test
+    public void rejectResumeWithDifferentAge() {
+        jdbcTemplate.update("update member set age = ? where member_id = ?", AGE + 5, memberIds.get(5));
+        executor.bulkAgePlus(jobId, AGE);
+
+        assertThatThrownBy(() -> executor.bulkAgePlus(jobId, AGE + 5))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(jobId);
+    }
+
+    private List<Integer> ages() {
+        List<Integer> ages = new ArrayList<>();
+        for (Long id : memberIds) {
+            ages.add(jdbcTemplate.queryForObject("select age from member where member_id = ?", Integer.class, id));
+        }
+        return ages;
+    }
+}
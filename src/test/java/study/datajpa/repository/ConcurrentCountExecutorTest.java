@@ -0,0 +1,110 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 풀 크기, 타임아웃을 작게 준 인스턴스를 따로 만들어서 확인한다. (컨텍스트의 빈은 비활성)
+ */
+@SpringBootTest
+class ConcurrentCountExecutorTest {
+
+    @Autowired PlatformTransactionManager transactionManager;
+
+    MeterRegistry registry = new SimpleMeterRegistry();
+    ConcurrentCountExecutor executor;
+
+    @BeforeEach
+    public void before() {
+        ConcurrentCountProperties properties = new ConcurrentCountProperties();
+        properties.setEnabled(true);
+        properties.setPoolSize(1);
+        properties.setQueueCapacity(1);
+        properties.setTimeout(Duration.ofMillis(200));
+        executor = new ConcurrentCountExecutor(properties, transactionManager, registry);
+    }
+
+    @AfterEach
+    public void after() {
+        executor.destroy();
+    }
+
+    @Test
+    public void timeoutCancelsCount() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<Long> future = executor.submit(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return 0;
+        });
+
+        assertThatThrownBy(() -> executor.await(future)).isInstanceOf(QueryTimeoutException.class);
+        assertThat(future.isCancelled()).isTrue();
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue(); // cancel(true) 가 count 스레드를 인터럽트한다
+        assertThat(registry.counter("member.count.concurrent", "result", "timeout").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void countFailureIsRethrown() {
+        Future<Long> future = executor.submit(() -> {
+            throw new IllegalStateException("count failed");
+        });
+
+        assertThatThrownBy(() -> executor.await(future))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("count failed");
+    }
+
+    @Test
+    public void saturatedPoolFallsBackToCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Long> running = executor.submit(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        });
+        Future<Long> queued = executor.submit(() -> 2);
+
+        // 스레드 1 + 큐 1 이 찼으므로 null - 호출한 쪽에서 순차 실행한다
+        assertThat(executor.submit(() -> 3)).isNull();
+        assertThat(registry.counter("member.count.concurrent", "result", "saturated").count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(executor.await(running)).isEqualTo(1);
+        assertThat(executor.await(queued)).isEqualTo(2);
+    }
+
+    @Test
+    public void notUsedInReadWriteTransaction() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        assertThat(executor.isEnabledForCaller()).isTrue();
+        assertThat(readOnly.execute(status -> executor.isEnabledForCaller())).isTrue();
+        // REQUIRES_NEW count 는 호출한 트랜잭션의 커밋 전 행을 보지 못한다
+        assertThat(readWrite.execute(status -> executor.isEnabledForCaller())).isFalse();
+        assertThat(registry.counter("member.count.concurrent", "result", "read-write-tx").count()).isEqualTo(1);
+    }
+}
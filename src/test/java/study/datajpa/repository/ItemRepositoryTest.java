@@ -5,7 +5,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.entity.Item;
+import study.datajpa.entity.id.Ulid;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -19,4 +25,52 @@ class ItemRepositoryTest {
         itemRepository.save(item);
     }
 
-}
\ No newline at end of file
+    @Test
+    @Transactional
+    public void insertAllAndUpsertAll() {
+        ItemBatchReport inserted = itemRepository.insertAll(Arrays.asList(new Item("A1"), new Item("A2")));
+        assertThat(inserted.getInsertedRows()).isEqualTo(2);
+
+        Item a3 = new Item("A3");
+        ItemBatchReport upserted = itemRepository.upsertAll(Arrays.asList(new Item("A2"), a3));
+        System.out.println("upserted = " + upserted);
+
+        assertThat(upserted.getInsertedRows()).isEqualTo(1);
+        assertThat(upserted.getUnknownRows()).isZero();
+        assertThat(a3.isNew()).isFalse();
+        assertThat(itemRepository.findAllById(Arrays.asList("A1", "A2", "A3"))).hasSize(3);
+    }
+
+    @Test
+    @Transactional
+    public void upsertAllSeesItemsSavedThroughJpa() {
+        Item saved = Item.withGeneratedId();
+        itemRepository.save(saved); // 아직 플러시 전
+
+        Item added = Item.withGeneratedId();
+        ItemBatchReport upserted = itemRepository.upsertAll(Arrays.asList(new Item(saved.getId()), added));
+
+        // JPA 로 저장한 행은 배치 전에 플러시되므로 이미 있는 행으로 건너뛴다
+        assertThat(upserted.getInsertedRows()).isEqualTo(1);
+        assertThat(itemRepository.findAllById(Arrays.asList(saved.getId(), added.getId()))).hasSize(2);
+    }
+
+    @Test
+    @Transactional
+    public void generatedUlidId() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items.add(Item.withGeneratedId());
+        }
+        // 생성 순서 = 문자열 순서
+        assertThat(items).extracting(Item::getId).isSorted().doesNotHaveDuplicates();
+        System.out.println("first = " + items.get(0).getId() + ", " + Ulid.timestampOf(items.get(0).getId()));
+
+        Item item = items.get(0);
+        assertThat(item.isNew()).isTrue();
+        itemRepository.save(item); // persist - 아이디가 있어도 select 없이 insert
+        assertThat(item.isNew()).isFalse();
+        assertThat(itemRepository.insertAll(items.subList(1, items.size())).getInsertedRows()).isEqualTo(999);
+    }
+
+}
@@ -0,0 +1,192 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberAgesChangedEvent;
+import study.datajpa.entity.MemberBulkUpdatedEvent;
+import study.datajpa.repository.index.MemberAgeHistogram;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * flush 가 별도 트랜잭션에서 update 하므로 @Transactional 을 붙이지 않는다. (만든 회원은 끝나고 지운다)
+ * 주기 flush 는 꺼 두고 직접 flush 한다.
+ */
+@SpringBootTest(properties = "member.write-behind.flush-interval=1h")
+@RecordApplicationEvents
+class MemberAgeWriteBehindTest {
+
+    @Autowired MemberAgeWriteBehind writeBehind;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberWriteBehindProperties properties;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired ApplicationEventPublisher publisher;
+    @Autowired MemberAgeHistogram histogram;
+    @Autowired ApplicationEvents events;
+    @PersistenceUnit EntityManagerFactory emf;
+
+    @Test
+    public void coalesceAndFlushUnderContention() throws Exception {
+        Long id1 = memberRepository.save(new Member("writeBehind1", 10)).getId();
+        Long id2 = memberRepository.save(new Member("writeBehind2", 20)).getId();
+        int threads = 8;
+        int incrementsPerThread = 20_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < incrementsPerThread; i++) {
+                        writeBehind.addAge(i % 2 == 0 ? id1 : id2, 1);
+                    }
+                }));
+            }
+            // 쓰는 도중에 flush 해도 증감이 사라지거나 두 번 반영되지 않는다
+            int flushes = 0;
+            while (!futures.stream().allMatch(Future::isDone)) {
+                writeBehind.flush();
+                flushes++;
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            MemberSearchCondition cond = new MemberSearchCondition();
+            cond.setUsername("writeBehind1");
+            long pending = writeBehind.pendingAge(id1);
+            List<MemberDto> withPending = memberRepository.searchIncludingPending(cond);
+            assertThat(withPending.get(0).getAge()).isEqualTo(memberRepository.search(cond).get(0).getAge() + pending);
+
+            writeBehind.flush();
+            assertThat(writeBehind.pendingMembers()).isZero();
+
+            Member member1 = memberRepository.findById(id1).get();
+            Member member2 = memberRepository.findById(id2).get();
+            System.out.println("flushes = " + flushes + ", member1 = " + member1 + ", version = " + member1.getVersion());
+            int perMember = threads * incrementsPerThread / 2;
+            assertThat(member1.getAge()).isEqualTo(10 + perMember);
+            assertThat(member2.getAge()).isEqualTo(20 + perMember);
+            assertThat(member1.getVersion()).isPositive();
+        } finally {
+            executor.shutdown();
+            memberRepository.deleteById(id1);
+            memberRepository.deleteById(id2);
+        }
+    }
+
+    @Test
+    public void failedFlushKeepsIncrements() {
+        Long id1 = memberRepository.save(new Member("writeBehindFail1", 10)).getId();
+        Long id2 = memberRepository.save(new Member("writeBehindFail2", 20)).getId();
+        try {
+            writeBehind.addAge(id1, 5);
+            writeBehind.addAge(id2, Integer.MAX_VALUE); // int 범위를 넘어 update 가 실패한다
+
+            assertThatThrownBy(() -> writeBehind.flush()).isInstanceOf(RuntimeException.class);
+
+            // 배치 전체가 롤백되고 증감은 다음 flush 로 넘어간다
+            assertThat(writeBehind.pendingAge(id1)).isEqualTo(5);
+            assertThat(memberRepository.findById(id1).get().getAge()).isEqualTo(10);
+
+            writeBehind.addAge(id2, -Integer.MAX_VALUE); // 실패한 증감을 상쇄 - 합이 0 이면 update 하지 않는다
+            writeBehind.flush();
+
+            assertThat(writeBehind.pendingAge(id1)).isZero();
+            assertThat(memberRepository.findById(id1).get().getAge()).isEqualTo(15);
+            assertThat(memberRepository.findById(id2).get().getAge()).isEqualTo(20);
+        } finally {
+            memberRepository.deleteById(id1);
+            memberRepository.deleteById(id2);
+        }
+    }
+
+    /**
+     * flush 는 바뀐 회원만 알리고, 인메모리 인덱스는 테이블을 다시 읽지 않고 그 회원만 옮긴다.
+     */
+    @Test
+    public void flushPublishesChangedMembersOnly() {
+        Long id1 = memberRepository.save(new Member("writeBehindEvent1", 10)).getId();
+        Long id2 = memberRepository.save(new Member("writeBehindEvent2", 20)).getId();
+        try {
+            long before = histogram.countByAge(15).orElse(0);
+            events.clear();
+
+            writeBehind.addAge(id1, 5);
+            writeBehind.flush();
+
+            List<MemberAgesChangedEvent> published = events.stream(MemberAgesChangedEvent.class).collect(toList());
+            assertThat(published).hasSize(1);
+            Map<Long, MemberAgesChangedEvent.Change> changes = published.get(0).getChanges();
+            assertThat(changes).containsOnlyKeys(id1);
+            assertThat(changes.get(id1).getBefore()).isEqualTo(10);
+            assertThat(changes.get(id1).getAfter()).isEqualTo(15);
+            assertThat(events.stream(MemberBulkUpdatedEvent.class)).isEmpty();
+
+            if (histogram.isAvailable()) {
+                assertThat(histogram.countByAge(15)).hasValue(before + 1);
+            }
+        } finally {
+            memberRepository.deleteById(id1);
+            memberRepository.deleteById(id2);
+        }
+    }
+
+    /**
+     * stop() 은 스케줄러를 닫으므로 컨텍스트의 빈 대신 따로 만든 인스턴스로 확인한다.
+     */
+    @Test
+    public void stopFlushesPendingIncrements() throws Exception {
+        Long id = memberRepository.save(new Member("writeBehindStop", 10)).getId();
+        MemberAgeWriteBehind instance = new MemberAgeWriteBehind(properties, jdbcTemplate, transactionManager,
+                emf, publisher, new SimpleMeterRegistry());
+        instance.start();
+        int threads = 4;
+        int incrementsPerThread = 5_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < incrementsPerThread; i++) {
+                        instance.addAge(id, 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            instance.stop();
+
+            assertThat(instance.isRunning()).isFalse();
+            assertThat(instance.pendingMembers()).isZero();
+            assertThat(memberRepository.findById(id).get().getAge()).isEqualTo(10 + threads * incrementsPerThread);
+        } finally {
+            executor.shutdown();
+            memberRepository.deleteById(id);
+        }
+    }
+}
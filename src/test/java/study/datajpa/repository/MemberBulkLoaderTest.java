@@ -0,0 +1,108 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.entity.EntityChangedEvent;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.MemberBulkLoadedEvent;
+import study.datajpa.repository.index.MemberAgeHistogram;
+import study.datajpa.repository.index.MemberColumnStore;
+import study.datajpa.repository.index.TeamNameDirectory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 적재한 데이터는 커밋되므로 @Transactional 을 쓰지 않는다. (적재한 팀/회원은 끝나고 지운다)
+ */
+@SpringBootTest(properties = "member.bulk-load.chunk-size=4")
+@RecordApplicationEvents
+class MemberBulkLoaderTest {
+
+    private static final int MEMBERS = 10;
+
+    @Autowired MemberBulkLoader memberBulkLoader;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired MemberColumnStore columnStore;
+    @Autowired MemberAgeHistogram ageHistogram;
+    @Autowired TeamNameDirectory teams;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired ApplicationEvents events;
+
+    List<String> teamNames = new ArrayList<>();
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String teamname : teamNames) {
+                memberRepository.deleteAllById(memberRepository.search(condition(teamname)).stream()
+                        .map(MemberDto::getId)
+                        .collect(Collectors.toList()));
+                for (long teamId : teams.idsNamed(teamname)) {
+                    teamRepository.deleteById(teamId);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void loadRebuildsCachesAndReadModels() {
+        String prefix = "loaderTeam" + System.nanoTime() + "_";
+        teamNames.add(prefix + 0);
+        teamNames.add(prefix + 1);
+        MemberSearchCondition cond = condition(prefix + 0);
+
+        // 적재 전 결과를 캐시에 넣어 둔다
+        assertThat(memberRepository.search(cond)).isEmpty();
+
+        MemberBulkLoader.Report report = memberBulkLoader.load(teamNames, MEMBERS);
+        System.out.println("report = " + report.getMembers() + " members, " + report.getRowsPerSecond() + " rows/s");
+        assertThat(report.getTeams()).isEqualTo(2);
+        assertThat(report.getMembers()).isEqualTo(MEMBERS);
+
+        // 행마다 이벤트를 보내지 않고 끝나고 한번만 보낸다
+        assertThat(events.stream(EntityChangedEvent.class)).isEmpty();
+        assertThat(events.stream(MemberBulkLoadedEvent.class)).hasSize(1);
+
+        // 캐시는 비워지고 read model 은 다시 만들어진다 (회원 i 는 팀 i % 2)
+        assertThat(memberRepository.search(cond)).hasSize(MEMBERS / 2);
+        assertThat(teams.idsNamed(prefix + 0)).hasSize(1);
+        assertThat(columnStore.search(cond)).extracting("username")
+                .containsExactly("member0", "member2", "member4", "member6", "member8");
+        assertThat(ageHistogram.count(cond)).hasValue(MEMBERS / 2);
+    }
+
+    @Test
+    public void listenersResumeAfterLoad() {
+        String teamname = "loaderTeam" + System.nanoTime();
+        teamNames.add(teamname);
+        memberBulkLoader.load(teamNames, 2);
+        events.clear();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Long teamId = teams.idsNamed(teamname)[0];
+            memberRepository.save(new Member("afterLoad", 10, teamRepository.findById(teamId).get()));
+        });
+
+        assertThat(events.stream(EntityChangedEvent.class)).hasSize(1);
+        assertThat(columnStore.search(condition(teamname))).extracting("username")
+                .containsExactly("member0", "member1", "afterLoad");
+    }
+
+    private MemberSearchCondition condition(String teamname) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamname(teamname);
+        return cond;
+    }
+}
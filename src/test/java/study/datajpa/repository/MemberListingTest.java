@@ -0,0 +1,54 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * /members 목록 - 엔티티 조회 후 DTO 변환(findAll)과 DTO 프로젝션(findMemberDtoPage)의 결과가 같은지 확인한다.
+ * 시간, 할당량 비교는 src/jmh 의 MemberListingBenchmark
+ */
+@SpringBootTest
+@Transactional
+class MemberListingTest {
+
+    @Autowired MemberRepository memberRepository;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @BeforeEach
+    public void before() {
+        Team team = new Team("listing");
+        em.persist(team);
+        for (int i = 0; i < 1000; i++) {
+            em.persist(new Member("member" + i, i % 100, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void projectionMatchesEntityListing() {
+        Pageable pageable = PageRequest.of(3, 100, Sort.by("username"));
+
+        Page<MemberDto> entityPage = memberRepository.findAll(pageable).map(MemberDto::new);
+        Page<MemberDto> projectionPage = memberRepository.findMemberDtoPage(pageable);
+        assertThat(projectionPage.getContent()).isEqualTo(entityPage.getContent());
+        assertThat(projectionPage.getTotalElements()).isEqualTo(entityPage.getTotalElements());
+    }
+}
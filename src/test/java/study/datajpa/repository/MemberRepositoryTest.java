@@ -1,5 +1,8 @@
 package study.datajpa.repository;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -11,6 +14,8 @@ import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.entity.Member;
 import study.datajpa.entity.Team;
+import study.datajpa.monitoring.StatementBudgetExceededException;
+import study.datajpa.monitoring.StatementBudgets;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -26,6 +31,7 @@ class MemberRepositoryTest {
 
     @Autowired MemberRepository memberRepository;
     @Autowired TeamRepository teamRepository;
+    @Autowired MeterRegistry meterRegistry;
 
     @PersistenceContext
     EntityManager em;
@@ -260,6 +266,7 @@ class MemberRepositoryTest {
         System.out.println("resultCount = " + resultCount);
 
         assertThat(resultCount).isEqualTo(4);
+        assertThat(member6.get(0).getVersion()).isEqualTo(1L); // 벌크 update 도 @Version 을 올린다
     }
 
     @Test
@@ -313,6 +320,19 @@ class MemberRepositoryTest {
 
         // 쿼리힌트 리드온리로 변경감지 체크를 안해서 업데이트를 안함.
         List<Member> memgggg = memberRepository.findLockByUsername("memgggg");
+
+        Timer wait = meterRegistry.find("member.lock.wait")
+                .tag("operation", "MemberRepository.findLockByUsername")
+                .timer();
+        assertThat(wait.count()).isPositive();
+
+        // 두 번째 호출은 처음 등록한 타이머에 기록한다
+        long before = wait.count();
+        memberRepository.findLockByUsername("memgggg");
+        assertThat(meterRegistry.find("member.lock.wait")
+                .tag("operation", "MemberRepository.findLockByUsername")
+                .timer()).isSameAs(wait);
+        assertThat(wait.count()).isEqualTo(before + 1);
     }
 
     @Test
@@ -354,4 +374,59 @@ class MemberRepositoryTest {
             System.out.println("usernameOnly = " + usernameOnly.getUsername());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void queryMetrics() throws Exception {
+        em.persist(new Member("metricA", 10));
+        em.persist(new Member("metricB", 20));
+        em.flush();
+        em.clear();
+
+        memberRepository.findProjectionsByUsername("metricA");
+
+        DistributionSummary statements = meterRegistry.get("query.statements")
+                .tags("component", "MemberRepository", "method", "findProjectionsByUsername").summary();
+        DistributionSummary rows = meterRegistry.get("query.rows")
+                .tags("component", "MemberRepository", "method", "findProjectionsByUsername").summary();
+        System.out.println("statements = " + statements.totalAmount() + ", rows = " + rows.totalAmount());
+
+        assertThat(statements.takeSnapshot().max()).isEqualTo(1);
+        assertThat(rows.takeSnapshot().max()).isEqualTo(1);
+
+        // 두번째 호출은 같은 미터에 기록된다
+        Timer invocations = meterRegistry.get("query.invocation")
+                .tags("component", "MemberRepository", "method", "findProjectionsByUsername", "exception", "none").timer();
+        long before = invocations.count();
+        memberRepository.findProjectionsByUsername("metricB");
+        assertThat(invocations.count()).isEqualTo(before + 1);
+        assertThat(statements.count()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    public void statementBudget() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamB));
+        em.flush();
+        em.clear();
+
+        // 페치 조인 - 1번
+        try (StatementBudgets.Tracker tracker = StatementBudgets.track("fetchJoin")) {
+            memberRepository.findMemberFetchJoin().forEach(m -> m.getTeam().getName());
+            tracker.assertAtMost(1);
+        }
+        em.clear();
+
+        // 지연 로딩 - 회원 1번 + 팀 (default_batch_fetch_size 로 IN 절 1번)
+        try (StatementBudgets.Tracker tracker = StatementBudgets.track("lazy")) {
+            memberRepository.findByNames(Arrays.asList("member1", "member2")).forEach(m -> m.getTeam().getName());
+            assertThat(tracker.getStatements()).isEqualTo(2);
+            assertThatThrownBy(() -> tracker.assertAtMost(1))
+                    .isInstanceOf(StatementBudgetExceededException.class)
+                    .hasMessageContaining("lazy");
+        }
+    }
+}
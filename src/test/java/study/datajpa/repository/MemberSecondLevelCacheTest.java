@@ -0,0 +1,82 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 2차 캐시는 커밋된 데이터만 올라가므로 @Transactional 을 쓰지 않는다. (만든 팀/회원은 끝나고 지운다)
+ * 캐시 적용 전/후 조회 시간 비교는 JMH - SecondLevelCacheBenchmark
+ */
+@SpringBootTest
+class MemberSecondLevelCacheTest {
+
+    @PersistenceUnit
+    EntityManagerFactory emf;
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    List<Long> memberIds = new ArrayList<>();
+    Long teamId;
+    String username;
+
+    @BeforeEach
+    public void before() {
+        username = "cached" + System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = teamRepository.save(new Team("cacheTeam"));
+            teamId = team.getId();
+            memberIds.add(memberRepository.save(new Member(username, 10, team)).getId());
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteAllById(memberIds);
+            teamRepository.deleteById(teamId);
+        });
+    }
+
+    @Test
+    public void findById() {
+        Long memberId = memberIds.get(0);
+        emf.getCache().evict(Member.class, memberId);
+
+        find(memberId); // 한번 읽으면 2차 캐시에 올라간다
+        assertThat(emf.getCache().contains(Member.class, memberId)).isTrue();
+        assertThat(find(memberId).getUsername()).isEqualTo(username);
+    }
+
+    @Test
+    public void findCachedByUsername() {
+        memberRepository.findCachedByUsername(username); // 쿼리 캐시 적재
+
+        assertThat(memberRepository.findCachedByUsername(username)).extracting("id").containsExactly(memberIds.get(0));
+        assertThat(emf.getCache().contains(Member.class, memberIds.get(0))).isTrue();
+    }
+
+    private Member find(Long memberId) {
+        EntityManager em = emf.createEntityManager(); // 1차 캐시 영향을 없애기 위해 새로 만든다
+        try {
+            return em.find(Member.class, memberId);
+        } finally {
+            em.close();
+        }
+    }
+}
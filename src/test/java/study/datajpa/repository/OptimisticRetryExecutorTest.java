@@ -0,0 +1,81 @@
+package study.datajpa.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import study.datajpa.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 스레드마다 별도 트랜잭션으로 커밋해야 하므로 @Transactional 을 붙이지 않는다. (만든 회원은 끝나고 지운다)
+ * 한 행에 8 스레드가 몰리므로 재시도 횟수를 넉넉히 준다.
+ */
+@SpringBootTest(properties = "member.retry.max-attempts=30")
+class OptimisticRetryExecutorTest {
+
+    @Autowired OptimisticRetryExecutor retryExecutor;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MeterRegistry meterRegistry;
+    @Autowired OptimisticRetryProperties retryProperties;
+
+    @Test
+    public void concurrentReadModifyWrite() throws Exception {
+        Long memberId = memberRepository.save(new Member("retryMember", 0)).getId();
+        int threads = 8;
+        int incrementsPerThread = 10;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < incrementsPerThread; i++) {
+                        retryExecutor.execute("test.agePlus", () -> {
+                            Member member = memberRepository.findById(memberId).get();
+                            member.setAge(member.getAge() + 1);
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            // 충돌한 시도는 다시 실행되므로 증가분이 하나도 사라지지 않는다
+            Member member = memberRepository.findById(memberId).get();
+            System.out.println("age = " + member.getAge() + ", version = " + member.getVersion()
+                    + ", retried = " + meterRegistry.counter("member.lock.retry", "operation", "test.agePlus", "result", "retried").count());
+            assertThat(member.getAge()).isEqualTo(threads * incrementsPerThread);
+            assertThat(member.getVersion()).isEqualTo((long) threads * incrementsPerThread);
+        } finally {
+            executor.shutdown();
+            memberRepository.deleteById(memberId);
+        }
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retryExecutor.execute("test.alwaysConflict", () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Member.class, 1L);
+        })).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+
+        assertThat(attempts.get()).isEqualTo(retryProperties.getMaxAttempts());
+        assertThat(meterRegistry.counter("member.lock.conflict", "type", "optimistic", "operation", "test.alwaysConflict").count())
+                .isEqualTo(retryProperties.getMaxAttempts());
+        assertThat(meterRegistry.counter("member.lock.retry", "operation", "test.alwaysConflict", "result", "exhausted").count())
+                .isEqualTo(1);
+    }
+}
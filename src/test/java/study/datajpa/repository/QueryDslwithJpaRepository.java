@@ -1,6 +1,7 @@
 package study.datajpa.repository;
 
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,10 +9,15 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.MemberCursor;
+import study.datajpa.dto.MemberCursorPage;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.dto.UsernameMatchMode;
 import study.datajpa.entity.Member;
 import study.datajpa.entity.Team;
+import study.datajpa.repository.index.MemberAgeHistogram;
+import study.datajpa.repository.index.MemberUsernameIndex;
 
 import javax.persistence.EntityManager;
 
@@ -34,6 +40,15 @@ class QueryDslwithJpaRepository {
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    MemberUsernameIndex usernameIndex;
+
+    @Autowired
+    MemberAgeHistogram ageHistogram;
+
     @BeforeEach
     public void before() {
         queryFactory = new JPAQueryFactory(em);
@@ -107,4 +122,118 @@ class QueryDslwithJpaRepository {
         assertThat(results.getSize()).isEqualTo(3);
         assertThat(results.getContent()).extracting("teamname").contains("teamB");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void searchByCursor() throws Exception {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setAgeGoe(15);
+
+        MemberCursorPage first = memberRepository.searchByCursor(cond, null, 2);
+        assertThat(first.getContent()).extracting("username").containsExactly("member2", "member3");
+        assertThat(first.isHasNext()).isTrue();
+
+        MemberCursorPage second = memberRepository.searchByCursor(cond, MemberCursor.decode(first.getNextCursor()), 2);
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void searchPageComplexSkipsCountCacheAfterWrite() throws Exception {
+        // username 조건이 있어야 나이 히스토그램 대신 SQL count (+ count 캐시) 를 쓴다
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsername("member1");
+        PageRequest pageRequest = PageRequest.of(0, 1);
+
+        double hits = meterRegistry.counter("member.count.cache", "result", "hit").count();
+        double misses = meterRegistry.counter("member.count.cache", "result", "miss").count();
+
+        Page<MemberDto> first = memberRepository.searchPageComplex(cond, pageRequest);
+        Page<MemberDto> second = memberRepository.searchPageComplex(cond, pageRequest);
+
+        // 회원을 넣은 트랜잭션 - 커밋 전 count 는 캐시에서 읽지도, 저장하지도 않는다 (캐시 동작은 MemberCountCacheTest)
+        assertThat(first.getTotalElements()).isEqualTo(1);
+        assertThat(second.getTotalElements()).isEqualTo(1);
+        assertThat(meterRegistry.counter("member.count.cache", "result", "hit").count()).isEqualTo(hits);
+        assertThat(meterRegistry.counter("member.count.cache", "result", "miss").count()).isEqualTo(misses);
+    }
+
+    @Test
+    public void searchCacheInvalidation() throws Exception {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setAgeGoe(35);
+
+        List<MemberDto> before = memberRepository.search(cond);
+        assertThat(before).extracting("username").containsExactly("member4");
+
+        em.persist(new Member("member5", 50));
+
+        // 플러시 -> 엔티티 리스너 -> 캐시 무효화
+        List<MemberDto> after = memberRepository.search(cond);
+        assertThat(after).extracting("username").containsExactly("member4", "member5");
+    }
+
+    @Test
+    public void searchQueryPlanReuse() throws Exception {
+        MemberSearchCondition first = new MemberSearchCondition();
+        first.setTeamname("teamB");
+        first.setAgeGoe(30);
+        memberJpaRepository.search(first);
+
+        double planMiss = meterRegistry.get("jpa.query.plan.cache").tag("result", "miss").functionCounter().count();
+
+        // 값만 다르고 shape 가 같은 조건 -> 같은 JPQL 이므로 쿼리 플랜 재사용
+        MemberSearchCondition second = new MemberSearchCondition();
+        second.setTeamname("teamA");
+        second.setAgeGoe(10);
+        List<MemberDto> result = memberJpaRepository.search(second);
+
+        assertThat(result).extracting("username").containsExactly("member1", "member2");
+        assertThat(meterRegistry.get("jpa.query.plan.cache").tag("result", "miss").functionCounter().count())
+                .isEqualTo(planMiss);
+    }
+
+    @Test
+    public void searchByUsernamePrefixAndInfix() throws Exception {
+        em.persist(new Member("alice01", 15));
+        em.persist(new Member("alicia", 25));
+        em.persist(new Member("malice", 35));
+
+        MemberSearchCondition prefix = new MemberSearchCondition();
+        prefix.setUsername("ali");
+        prefix.setUsernameMatch(UsernameMatchMode.PREFIX);
+        assertThat(memberRepository.search(prefix)).extracting("username")
+                .containsExactlyInAnyOrder("alice01", "alicia");
+
+        MemberSearchCondition infix = new MemberSearchCondition();
+        infix.setUsername("lic");
+        infix.setUsernameMatch(UsernameMatchMode.INFIX);
+        infix.setAgeGoe(20);
+        assertThat(usernameIndex.candidates(infix)).isNull(); // 회원을 바꾼 트랜잭션 - 인덱스 대신 LIKE 로 찾는다
+        assertThat(memberRepository.search(infix)).extracting("username")
+                .containsExactlyInAnyOrder("alicia", "malice");
+
+        Page<MemberDto> page = memberRepository.searchPageComplex(infix, PageRequest.of(0, 1));
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(page.getContent()).hasSize(1);
+    }
+
+    @Test
+    public void searchPageComplexCountSkipsAgeHistogramAfterWrite() throws Exception {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamname("teamA");
+        cond.setAgeGoe(15);
+        Team teamA = em.createQuery("select t from Team t where t.name = :name", Team.class)
+                .setParameter("name", "teamA")
+                .getSingleResult();
+        em.persist(new Member("member5", 30, teamA));
+
+        double fallbacks = meterRegistry.counter("member.age.histogram", "result", "fallback").count();
+        Page<MemberDto> page = memberRepository.searchPageComplex(cond, PageRequest.of(0, 1));
+
+        // 회원/팀을 바꾼 트랜잭션이므로 히스토그램 대신 SQL 로 count 해서 자기 변경을 본다
+        assertThat(page.getTotalElements()).isEqualTo(2); // member2, member5
+        assertThat(meterRegistry.counter("member.age.histogram", "result", "fallback").count()).isEqualTo(fallbacks + 1);
+        assertThat(ageHistogram.countByAge(30)).isEmpty();
+    }
+}
@@ -0,0 +1,77 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.TeamDto;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.monitoring.StatementBudgets;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class TeamRepositoryTest {
+
+    @Autowired TeamRepository teamRepository;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @BeforeEach
+    public void before() {
+        for (int i = 0; i < 10; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            for (int j = 0; j < 3; j++) {
+                em.persist(new Member("member" + i + "_" + j, j, team));
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void findTeamsWithMembers() throws Exception {
+        // 현재 스레드에서 실행된 문장만 센다 (write-behind 플러시 스레드 등 다른 스레드의 쿼리는 빠진다)
+        try (StatementBudgets.Tracker tracker = StatementBudgets.track("findTeamsWithMembers")) {
+            //when
+            Page<TeamDto> page = teamRepository.findTeamsWithMembers(PageRequest.of(0, 5));
+
+            //then
+            assertThat(page.getContent()).hasSize(5);
+            assertThat(page.getTotalElements()).isEqualTo(10);
+            for (TeamDto team : page.getContent()) {
+                assertThat(team.getMembers()).hasSize(3);
+            }
+            // 팀 1 + 회원 IN 1 + count 1 - 팀마다 쿼리가 나가면(N+1) 실패한다
+            tracker.assertAtMost(3);
+        }
+    }
+
+    @Test
+    public void findTeamsWithMembersSorted() {
+        Page<TeamDto> page = teamRepository.findTeamsWithMembers(
+                PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "name")));
+
+        assertThat(page.getContent()).extracting("name").containsExactly("team9", "team8", "team7", "team6", "team5");
+        assertThat(page.getContent().get(0).getMembers()).extracting("username")
+                .containsExactly("member9_0", "member9_1", "member9_2");
+
+        // 팀에 없는 속성은 무시하지 않고 거부한다 (리포지토리 예외 변환으로 InvalidDataAccessApiUsageException)
+        assertThatThrownBy(() -> teamRepository.findTeamsWithMembers(PageRequest.of(0, 5, Sort.by("username"))))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                .hasRootCauseInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("username");
+    }
+}
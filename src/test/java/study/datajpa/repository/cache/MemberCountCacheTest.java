@@ -0,0 +1,147 @@
+package study.datajpa.repository.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.dto.UsernameMatchMode;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * count 캐시는 커밋된 데이터의 count 만 저장하므로 @Transactional 을 쓰지 않는다. (만든 팀/회원은 끝나고 지운다)
+ * 공유 DB 의 다른 회원과 섞이지 않도록 테스트마다 다른 username 접두어로 센다.
+ */
+@SpringBootTest
+class MemberCountCacheTest {
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired MeterRegistry meterRegistry;
+
+    String prefix;
+    List<Long> memberIds = new ArrayList<>();
+    List<Long> teamIds = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        prefix = "count" + System.nanoTime() + "_";
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 3; i++) {
+                memberIds.add(memberRepository.save(new Member(prefix + i, 10 + i)).getId());
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteAllById(memberIds);
+            teamRepository.deleteAllById(teamIds);
+        });
+    }
+
+    @Test
+    public void hitAfterCommittedCount() {
+        MemberSearchCondition cond = condition();
+        double hits = hits();
+
+        assertThat(total(cond)).isEqualTo(3);
+        cond.setTeamname(""); // 정규화되면 같은 키
+        assertThat(total(cond)).isEqualTo(3);
+
+        assertThat(hits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void writingTransactionDoesNotStore() {
+        MemberSearchCondition cond = condition();
+        transactionTemplate.executeWithoutResult(status -> {
+            memberIds.add(memberRepository.save(new Member(prefix + "uncommitted", 20)).getId());
+            assertThat(total(cond)).isEqualTo(4); // 자기 변경은 보인다
+            status.setRollbackOnly();
+        });
+        memberIds.remove(memberIds.size() - 1);
+
+        // 롤백된 행이 들어간 count 가 남아 있지 않다
+        assertThat(total(cond)).isEqualTo(3);
+    }
+
+    @Test
+    public void invalidatesOnlyMatchingEntries() {
+        MemberSearchCondition cond = condition();
+        total(cond);
+
+        // 조건에 맞지 않는 회원, 새 팀은 이 항목을 무효화하지 않는다
+        transactionTemplate.executeWithoutResult(status -> {
+            teamIds.add(teamRepository.save(new Team(prefix + "team")).getId());
+            memberIds.add(memberRepository.save(new Member("other" + prefix, 20)).getId());
+        });
+        double hits = hits();
+        assertThat(total(cond)).isEqualTo(3);
+        assertThat(hits()).isEqualTo(hits + 1);
+
+        // 조건에 맞는 회원이 들어오면 다시 센다
+        transactionTemplate.executeWithoutResult(status ->
+                memberIds.add(memberRepository.save(new Member(prefix + "new", 20)).getId()));
+        assertThat(total(cond)).isEqualTo(4);
+        assertThat(hits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void invalidatesOnlyTheMembersTeam() {
+        Team[] teams = new Team[2];
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < teams.length; i++) {
+                teams[i] = teamRepository.save(new Team(prefix + "team" + i));
+                teamIds.add(teams[i].getId());
+            }
+        });
+        MemberSearchCondition cond = condition();
+        cond.setTeamname(teams[0].getName());
+        assertThat(total(cond)).isZero();
+
+        // 다른 팀 회원은 이 팀 조건의 항목을 무효화하지 않는다
+        transactionTemplate.executeWithoutResult(status ->
+                memberIds.add(memberRepository.save(new Member(prefix + "other", 20, teams[1])).getId()));
+        double hits = hits();
+        assertThat(total(cond)).isZero();
+        assertThat(hits()).isEqualTo(hits + 1);
+
+        // 팀 프록시만 있는 회원을 지워도 디렉터리에서 팀 이름을 찾아 그 팀 항목만 무효화한다
+        Long memberId = transactionTemplate.execute(status ->
+                memberRepository.save(new Member(prefix + "mine", 20, teams[0])).getId());
+        assertThat(total(cond)).isEqualTo(1);
+        transactionTemplate.executeWithoutResult(status -> memberRepository.delete(memberRepository.findById(memberId).get()));
+        assertThat(total(cond)).isZero();
+    }
+
+    private long total(MemberSearchCondition cond) {
+        return memberRepository.searchPageComplex(cond, PageRequest.of(0, 1)).getTotalElements();
+    }
+
+    private double hits() {
+        return meterRegistry.counter("member.count.cache", "result", "hit").count();
+    }
+
+    private MemberSearchCondition condition() {
+        // username 조건이 있어야 나이 히스토그램 대신 SQL count (+ count 캐시) 를 쓴다
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsername(prefix);
+        cond.setUsernameMatch(UsernameMatchMode.PREFIX);
+        return cond;
+    }
+}
@@ -0,0 +1,131 @@
+package study.datajpa.repository.index;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.entity.EntityChangedEvent;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 히스토그램은 커밋된 변경만 반영하므로 @Transactional 을 쓰지 않는다. (만든 팀/회원은 끝나고 지운다)
+ * 공유 DB 의 다른 데이터와 섞이지 않도록 이 테스트가 만든 팀 이름으로만 센다.
+ */
+@SpringBootTest
+class MemberAgeHistogramTest {
+
+    @Autowired MemberAgeHistogram ageHistogram;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired MeterRegistry meterRegistry;
+    @Autowired MemberAgeHistogramProperties properties;
+    @Autowired TeamNameDirectory teams;
+    @Autowired DataSource dataSource;
+
+    String teamname;
+    Long teamId;
+    List<Long> memberIds = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        teamname = "histogramTeam" + System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = teamRepository.save(new Team(teamname));
+            teamId = team.getId();
+            for (int i = 1; i <= 4; i++) {
+                memberIds.add(memberRepository.save(new Member("histogram" + i, i * 10, team)).getId());
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteAllById(memberIds);
+            teamRepository.deleteById(teamId);
+        });
+    }
+
+    @Test
+    public void searchPageComplexCountFromHistogram() {
+        double hits = meterRegistry.counter("member.age.histogram", "result", "hit").count();
+        Page<MemberDto> page = memberRepository.searchPageComplex(condition(15), PageRequest.of(0, 1));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(meterRegistry.counter("member.age.histogram", "result", "hit").count()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void countsOnlyCommittedMembers() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = teamRepository.findById(teamId).get();
+            memberRepository.save(new Member("uncommitted", 50, team));
+            memberRepository.deleteById(memberIds.get(0));
+            memberRepository.flush();
+
+            // 다른 스레드(트랜잭션 밖)에는 커밋 전 insert/delete 가 보이지 않는다
+            assertThat(CompletableFuture.supplyAsync(() -> ageHistogram.count(condition(null))).join())
+                    .hasValue(4);
+            status.setRollbackOnly();
+        });
+        assertThat(ageHistogram.count(condition(null))).hasValue(4);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Member member = memberRepository.findById(memberIds.get(0)).get();
+            member.setAge(35);
+        });
+        assertThat(ageHistogram.count(condition(30))).hasValue(3);
+    }
+
+    @Test
+    public void countsMembersCommittedDuringBuild() {
+        MemberAgeHistogram[] histogram = new MemberAgeHistogram[1];
+        // build() 의 select 가 끝난 뒤, 히스토그램이 준비되기 전에 다른 스레드에서 커밋한다
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource) {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                super.query(sql, rch);
+                CompletableFuture.runAsync(() -> {
+                    Member member = transactionTemplate.execute(status -> memberRepository.save(
+                            new Member("duringBuild", 45, teamRepository.findById(teamId).get())));
+                    memberIds.add(member.getId());
+                    histogram[0].afterMemberCommitted(new EntityChangedEvent(member, EntityChangedEvent.Type.PERSIST));
+                }).join();
+            }
+        };
+        histogram[0] = new MemberAgeHistogram(properties, jdbcTemplate, teams, new SimpleMeterRegistry());
+
+        histogram[0].build();
+
+        assertThat(histogram[0].count(condition(null))).hasValue(5);
+        assertThat(histogram[0].count(condition(41))).hasValue(1);
+    }
+
+    private MemberSearchCondition condition(Integer ageGoe) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamname(teamname);
+        cond.setAgeGoe(ageGoe);
+        return cond;
+    }
+}
@@ -0,0 +1,137 @@
+package study.datajpa.repository.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.entity.EntityChangedEvent;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 컬럼 저장소는 커밋된 변경만 반영하므로 @Transactional 을 쓰지 않는다. (만든 팀/회원은 끝나고 지운다)
+ * 공유 DB 의 다른 데이터와 섞이지 않도록 이 테스트가 만든 팀 이름으로만 검색한다.
+ */
+@SpringBootTest
+class MemberColumnStoreTest {
+
+    @Autowired MemberColumnStore columnStore;
+    @Autowired MemberReadModelVerifier readModelVerifier;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired MemberColumnStoreProperties properties;
+    @Autowired TeamNameDirectory teams;
+    @Autowired DataSource dataSource;
+
+    String teamname;
+    Long teamId;
+    List<Long> memberIds = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        teamname = "columnTeam" + System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = teamRepository.save(new Team(teamname));
+            teamId = team.getId();
+            for (int i = 1; i <= 4; i++) {
+                memberIds.add(memberRepository.save(new Member("column" + i, i * 10, team)).getId());
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteAllById(memberIds);
+            teamRepository.deleteById(teamId);
+        });
+    }
+
+    @Test
+    public void matchesJpa() {
+        MemberSearchCondition cond = condition(25);
+
+        MemberReadModelVerifier.Report report = readModelVerifier.verify(cond);
+        System.out.println("report = " + report);
+        assertThat(report.isConsistent()).isTrue();
+
+        assertThat(columnStore.search(cond)).extracting("username").containsExactly("column3", "column4");
+        assertThat(columnStore.searchPage(condition(null), PageRequest.of(1, 3)).getContent())
+                .extracting("username").containsExactly("column4");
+    }
+
+    @Test
+    public void appliesOnlyCommittedChanges() {
+        MemberSearchCondition cond = condition(25);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Member member = memberRepository.findById(memberIds.get(0)).get();
+            member.setAge(50);
+            memberRepository.flush();
+
+            // 바꾼 트랜잭션 안에서는 쓰지 않고, 다른 스레드에서는 커밋 전 값이 보이지 않는다
+            assertThat(columnStore.search(cond)).isNull();
+            assertThat(CompletableFuture.supplyAsync(() -> columnStore.search(cond)).join())
+                    .extracting("username").containsExactly("column3", "column4");
+        });
+        assertThat(columnStore.search(cond)).extracting("username").containsExactly("column1", "column3", "column4");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.deleteById(memberIds.get(1));
+            memberRepository.save(new Member("rolledBack", 60, teamRepository.findById(teamId).get()));
+            memberRepository.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(columnStore.search(condition(null))).extracting("username")
+                .containsExactly("column1", "column2", "column3", "column4");
+        assertThat(readModelVerifier.verify(condition(null)).isConsistent()).isTrue();
+    }
+
+    @Test
+    public void appliesChangesCommittedDuringBuild() {
+        MemberColumnStore[] store = new MemberColumnStore[1];
+        // build() 의 select 가 끝난 뒤, 저장소가 준비되기 전에 다른 스레드에서 커밋한다
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource) {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+                super.query(sql, rch);
+                CompletableFuture.runAsync(() -> {
+                    Member member = transactionTemplate.execute(status -> memberRepository.save(
+                            new Member("duringBuild", 99, teamRepository.findById(teamId).get())));
+                    memberIds.add(member.getId());
+                    store[0].afterMemberCommitted(new EntityChangedEvent(member, EntityChangedEvent.Type.PERSIST));
+                }).join();
+            }
+        };
+        store[0] = new MemberColumnStore(properties, jdbcTemplate, teams, new SimpleMeterRegistry());
+
+        store[0].build();
+
+        assertThat(store[0].search(condition(null))).extracting("username")
+                .containsExactly("column1", "column2", "column3", "column4", "duringBuild");
+    }
+
+    private MemberSearchCondition condition(Integer ageGoe) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamname(teamname);
+        cond.setAgeGoe(ageGoe);
+        return cond;
+    }
+}
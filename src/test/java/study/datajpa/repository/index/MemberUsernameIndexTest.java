@@ -0,0 +1,93 @@
+package study.datajpa.repository.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.dto.UsernameMatchMode;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 인덱스는 커밋된 변경만 반영하므로 @Transactional 을 쓰지 않는다. (만든 회원은 끝나고 지운다)
+ * 공유 DB 의 다른 회원과 섞이지 않도록 테스트마다 다른 username 접두어를 쓴다.
+ */
+@SpringBootTest
+class MemberUsernameIndexTest {
+
+    @Autowired MemberUsernameIndex usernameIndex;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    String prefix;
+    List<Long> memberIds = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        prefix = "idx" + System.nanoTime() + "_";
+        transactionTemplate.executeWithoutResult(status -> {
+            memberIds.add(memberRepository.save(new Member(prefix + "alice", 15)).getId());
+            memberIds.add(memberRepository.save(new Member(prefix + "alicia", 25)).getId());
+            memberIds.add(memberRepository.save(new Member(prefix + "bob", 35)).getId());
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status -> memberRepository.deleteAllById(memberIds));
+    }
+
+    @Test
+    public void prefixCandidates() {
+        assertThat(usernameIndex.candidates(condition(prefix + "ali"))).containsExactlyInAnyOrder(memberIds.get(0), memberIds.get(1));
+    }
+
+    @Test
+    public void uncommittedRenameKeepsCandidate() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.findById(memberIds.get(0)).get().setUsername(prefix + "carol");
+            memberRepository.deleteById(memberIds.get(1));
+            memberRepository.flush();
+
+            // 다른 스레드에는 커밋 전 rename/delete 가 보이지 않으므로 후보에서 빠지면 안 된다
+            assertThat(CompletableFuture.supplyAsync(() -> usernameIndex.candidates(condition(prefix + "ali"))).join())
+                    .containsExactlyInAnyOrder(memberIds.get(0), memberIds.get(1));
+            status.setRollbackOnly();
+        });
+        assertThat(usernameIndex.candidates(condition(prefix + "ali"))).containsExactlyInAnyOrder(memberIds.get(0), memberIds.get(1));
+
+        transactionTemplate.executeWithoutResult(status ->
+                memberRepository.findById(memberIds.get(0)).get().setUsername(prefix + "carol"));
+        assertThat(usernameIndex.candidates(condition(prefix + "ali"))).containsExactly(memberIds.get(1));
+        assertThat(usernameIndex.candidates(condition(prefix + "car"))).containsExactly(memberIds.get(0));
+    }
+
+    @Test
+    public void changesCommittedDuringBuildAreReplayed() {
+        for (int i = 0; i < 5; i++) {
+            String renamed = prefix + "renamed" + i;
+            CompletableFuture<Void> build = CompletableFuture.runAsync(usernameIndex::build);
+            transactionTemplate.executeWithoutResult(status ->
+                    memberRepository.findById(memberIds.get(2)).get().setUsername(renamed));
+            build.join();
+
+            assertThat(usernameIndex.candidates(condition(renamed))).containsExactly(memberIds.get(2));
+        }
+    }
+
+    private MemberSearchCondition condition(String username) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsername(username);
+        cond.setUsernameMatch(UsernameMatchMode.PREFIX);
+        return cond;
+    }
+}
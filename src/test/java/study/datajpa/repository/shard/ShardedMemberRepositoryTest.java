@@ -0,0 +1,184 @@
+package study.datajpa.repository.shard;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.datajpa.config.ShardingConfig;
+import study.datajpa.config.ShardingProperties;
+import study.datajpa.config.Shards;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.dto.MemberSearchCondition;
+import study.datajpa.dto.UsernameMatchMode;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 인메모리 H2 세 개를 샤드로 쓴다.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard-primary;DB_CLOSE_DELAY=-1",
+        "sharding.enabled=true",
+        "sharding.shards[0].url=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "sharding.shards[1].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+        "sharding.shards[2].url=jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1"
+})
+class ShardedMemberRepositoryTest {
+
+    @Autowired ShardedMemberRepository shardedRepository;
+    @Autowired MemberRepository memberRepository;
+    @Autowired Shards shards;
+    @Autowired ShardingProperties shardingProperties;
+    @Autowired EntityManagerFactoryBuilder builder;
+    @Autowired JpaProperties jpaProperties;
+    @Autowired ConfigurableListableBeanFactory beanFactory;
+
+    @Test
+    public void scatterGatherSearch() {
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            teams.add(shardedRepository.saveTeam(new Team("shardTeam" + i)));
+        }
+        for (int i = 0; i < 60; i++) {
+            shardedRepository.saveMember(new Member("shardMember" + i, i, teams.get(i % teams.size())));
+        }
+
+        // 팀 id 로 계산한 샤드와 실제로 저장된 샤드가 같다
+        for (Team team : teams) {
+            Shards.Shard shard = shards.forTeamId(team.getId());
+            assertThat(shardedRepository.targetsFor(teamCondition(team.getName()))).containsExactly(shard.getIndex());
+            Long count = shard.getReadTx().execute(status -> shard.getEntityManager()
+                    .createQuery("select count(m) from Member m where m.team.id = :teamId", Long.class)
+                    .setParameter("teamId", team.getId())
+                    .getSingleResult());
+            assertThat(count).isEqualTo(10);
+        }
+
+        // 전체 검색은 모든 샤드 결과를 id 순으로 합친다 (id 는 샤드끼리 겹치지 않는다)
+        MemberSearchCondition all = new MemberSearchCondition();
+        all.setUsername("shardMember");
+        all.setUsernameMatch(UsernameMatchMode.PREFIX);
+        List<MemberDto> merged = memberRepository.search(all);
+        List<Long> ids = merged.stream().map(MemberDto::getId).collect(Collectors.toList());
+        System.out.println("ids = " + ids);
+        assertThat(merged).hasSize(60);
+        assertThat(ids).doesNotHaveDuplicates().isSorted();
+
+        // 다시 페이징한 결과는 합친 목록을 자른 것과 같다
+        Page<MemberDto> page = memberRepository.searchPageComplex(all, PageRequest.of(2, 7));
+        assertThat(page.getTotalElements()).isEqualTo(60);
+        assertThat(page.getContent()).extracting(MemberDto::getId).isEqualTo(ids.subList(14, 21));
+
+        // teamname 조건은 그 팀이 있는 샤드에만 간다
+        MemberSearchCondition byTeam = teamCondition("shardTeam1");
+        byTeam.setAgeGoe(30);
+        List<MemberDto> teamMembers = memberRepository.search(byTeam);
+        assertThat(teamMembers).extracting(MemberDto::getTeamname).containsOnly("shardTeam1");
+        assertThat(teamMembers).extracting(MemberDto::getAge).containsExactly(31, 37, 43, 49, 55);
+
+        assertThat(memberRepository.search(teamCondition("noSuchTeam"))).isEmpty();
+    }
+
+    @Test
+    public void unknownTeamFallsBackToAllShards() {
+        // 다른 인스턴스가 저장한 팀은 이 인스턴스의 디렉터리에 없다
+        Shards.Shard shard = shards.get(1);
+        Team team = new Team("otherInstanceTeam");
+        shard.getWriteTx().executeWithoutResult(status -> {
+            shard.getEntityManager().persist(team);
+            shard.getEntityManager().persist(new Member("otherInstanceMember", 20, team));
+        });
+
+        MemberSearchCondition cond = teamCondition("otherInstanceTeam");
+        assertThat(shardedRepository.targetsFor(cond)).hasSize(shards.size());
+        assertThat(memberRepository.search(cond)).extracting(MemberDto::getUsername).containsExactly("otherInstanceMember");
+    }
+
+    @Test
+    public void sequencesAreValidatedAtStartup() {
+        for (Shards.Shard shard : shards.all()) {
+            ShardingConfig.validateSequences(new JdbcTemplate(shard.getDataSource()), shard.getIndex(), shards.size());
+        }
+
+        // 다른 샤드의 구간을 쓰는 시퀀스는 거부한다
+        Shards.Shard shard = shards.get(0);
+        assertThatThrownBy(() -> ShardingConfig.validateSequences(new JdbcTemplate(shard.getDataSource()), 1, shards.size()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("member_seq");
+    }
+
+    /**
+     * 이미 있는 샤드 DB 로 다시 기동한다 - 시퀀스 increment(샤드 수 * 50)가 매핑(50)과 달라도 기동되고 id 구간이 이어진다.
+     */
+    @Test
+    public void restartsAgainstExistingShards() {
+        List<Team> before = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            before.add(shardedRepository.saveTeam(new Team("restartTeamBefore" + i)));
+        }
+
+        HibernateProperties existingSchema = new HibernateProperties();
+        existingSchema.setDdlAuto("none");
+        Shards restarted = new ShardingConfig().shards(shardingProperties, builder, jpaProperties, existingSchema,
+                beanFactory, new SimpleMeterRegistry());
+        try {
+            for (Shards.Shard shard : restarted.all()) {
+                Team team = new Team("restartTeamAfter" + shard.getIndex());
+                shard.getWriteTx().executeWithoutResult(status -> shard.getEntityManager().persist(team));
+                System.out.println("shard-" + shard.getIndex() + " team id = " + team.getId());
+                assertThat(restarted.forTeamId(team.getId()).getIndex()).isEqualTo(shard.getIndex());
+                assertThat(before).extracting(Team::getId).doesNotContain(team.getId());
+            }
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    public void changeTeamStaysOnShard() {
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            teams.add(shardedRepository.saveTeam(new Team("moveTeam" + i)));
+        }
+        Team from = teams.get(0);
+        int fromShard = shards.forTeamId(from.getId()).getIndex();
+        Team sameShard = teams.stream().skip(1)
+                .filter(team -> shards.forTeamId(team.getId()).getIndex() == fromShard)
+                .findFirst().orElseThrow();
+        Team otherShard = teams.stream()
+                .filter(team -> shards.forTeamId(team.getId()).getIndex() != fromShard)
+                .findFirst().orElseThrow();
+        Member member = shardedRepository.saveMember(new Member("moveMember", 20, from));
+
+        // 다른 샤드의 팀으로는 옮기지 않는다 - 회원은 원래 팀에 남는다
+        assertThatThrownBy(() -> shardedRepository.changeTeam(member, otherShard))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("shard-" + fromShard);
+
+        Member moved = shardedRepository.changeTeam(member, sameShard);
+        assertThat(moved.getId()).isEqualTo(member.getId());
+        assertThat(memberRepository.search(teamCondition(sameShard.getName())))
+                .extracting(MemberDto::getUsername).containsExactly("moveMember");
+        assertThat(memberRepository.search(teamCondition(from.getName()))).isEmpty();
+    }
+
+    private static MemberSearchCondition teamCondition(String teamname) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamname(teamname);
+        return cond;
+    }
+}